@@ -1,19 +1,20 @@
 package audio;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AudioManager {
     private static AudioPlayer currentMusic;
-    private static Map<String, AudioPlayer> soundEffects = new HashMap<>();
+    private static Map<String, AudioPlayer> soundEffects = new ConcurrentHashMap<>(); // filled from the loader threads too
     private static boolean soundMuted = false;
     private static float soundVolume = 1.0f;
     private static boolean musicMuted = false;
     private static float musicVolume = 1.0f;
+    private static boolean enabled = true; // false for headless runs, nothing touches the sound system
     
     // Play background music
     public static void playMusic(String musicPath) {
-        if (musicMuted)
+        if (!enabled || musicMuted)
             return;
             
         if (currentMusic != null) {
@@ -39,7 +40,7 @@ public class AudioManager {
     
     // Play a sound effect once
     public static void playSFX(String sfxPath) {
-        if (soundMuted)
+        if (!enabled || soundMuted)
             return;
             
         try {
@@ -59,6 +60,13 @@ public class AudioManager {
         }
     }
     
+    // Opens the clip ahead of time so the first play doesn't stall on loading it
+    public static void preloadSFX(String sfxPath) {
+        if (!enabled)
+            return;
+        soundEffects.computeIfAbsent(sfxPath, AudioPlayer::new);
+    }
+    
     // Set music volume
     public static void setMusicVolume(float volume) {
         musicVolume = volume;
@@ -98,6 +106,12 @@ public class AudioManager {
         }
     }
     
+    public static void setEnabled(boolean enabled) {
+        AudioManager.enabled = enabled;
+        if (!enabled)
+            cleanUp();
+    }
+    
     public static boolean isMusicMuted() {
         return musicMuted;
     }
@@ -2,15 +2,22 @@ package audio;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import javax.sound.sampled.*;
 
+import utilz.AssetArchive;
+
 public class AudioPlayer {
     private Clip clip;
 
     public AudioPlayer(String soundFilePath) {
         try {
-            File file = new File(soundFilePath);
-            AudioInputStream audioStream = AudioSystem.getAudioInputStream(file);
+            AudioInputStream audioStream;
+            InputStream packed = OpenPacked(soundFilePath);
+            if (packed != null)
+                audioStream = AudioSystem.getAudioInputStream(packed);
+            else
+                audioStream = AudioSystem.getAudioInputStream(new File(soundFilePath));
             clip = AudioSystem.getClip();
             clip.open(audioStream);
         } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
@@ -18,6 +25,17 @@ public class AudioPlayer {
         }
     }
 
+    // Sounds are given as paths under res/, in the archive they are stored relative to res/
+    private static InputStream OpenPacked(String soundFilePath) {
+        AssetArchive archive = AssetArchive.Get();
+        if (archive == null)
+            return null;
+        String name = soundFilePath.replace('\\', '/');
+        if (name.startsWith("res/"))
+            name = name.substring(4);
+        return archive.contains(name) ? archive.openStream(name) : null;
+    }
+
     public void play() {
         if (clip != null) {
             clip.setFramePosition(0); // Start from the beginning
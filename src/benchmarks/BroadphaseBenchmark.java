@@ -0,0 +1,124 @@
+package benchmarks;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Random;
+
+import entities.Enemy;
+import entities.EnemyGrid;
+import levels.Level;
+import levels.LevelLayout;
+import main.Game;
+
+import static utilz.Constants.EnemyConstants.*;
+
+// Hit checks on stress levels full of Sigbins, the linear scans EnemyManager used to do against EnemyGrid.
+// Every tick all Sigbins walk a little (turning now and then), then the player's attack box and
+// hitbox are checked against them, like Player.checkAttack and EnemyManager.checkPlayerHit do.
+// "old" is the scan over every Sigbin, "new" the same two checks asked of the grid. Both must find
+// the same enemy every time. "upkeep" is EnemyGrid.moved per Sigbin per tick, timed as a pass of its
+// own here, in the game it runs right after each enemy's update while its hitbox is still in cache.
+// The scan stops at the first hit, so it is cheapest while the player stands in a crowd.
+//
+// Usage: java -Djava.awt.headless=true benchmarks.BroadphaseBenchmark
+public class BroadphaseBenchmark {
+
+	private static final int WIDTH = 1000; // tiles
+	private static final int[] SIGBINS = { 100, 1000, 2000, 5000 };
+	private static final int TICKS = 2000;
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) {
+		System.out.printf("%8s %12s %12s %8s %16s%n", "sigbins", "old ns/tick", "new ns/tick", "speedup", "upkeep ns/enemy");
+		for (int count : SIGBINS)
+			Run(count);
+	}
+
+	private static void Run(int count) {
+		Level level = new Level(CreateStressLayout(count, new Random(count)));
+		ArrayList<Enemy> sigbins = level.getEnemies(); // the stress level only spawns Sigbins
+		EnemyGrid grid = new EnemyGrid(WIDTH);
+		for (Enemy s : sigbins)
+			grid.add(s);
+
+		float walkSpeed = 0.3f * Game.SCALE;
+		float levelWidth = WIDTH * Game.TILES_SIZE;
+		Random random = new Random(42);
+		float[] dirs = new float[count];
+		int[] turnAt = new int[count];
+		for (int i = 0; i < count; i++) {
+			dirs[i] = random.nextBoolean() ? walkSpeed : -walkSpeed;
+			turnAt[i] = random.nextInt(400);
+		}
+
+		Rectangle2D.Float player = new Rectangle2D.Float(levelWidth / 2, 12 * Game.TILES_SIZE - 230, 115, 230);
+		Rectangle2D.Float attackBox = new Rectangle2D.Float(0, 0, (int) (60 * Game.SCALE), (int) (60 * Game.SCALE));
+		float playerDir = 4;
+
+		long oldTime = 0, newTime = 0, upkeepTime = 0;
+		int sink = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			boolean timed = round >= ROUNDS / 2; // first half is warm up
+			for (int tick = 0; tick < TICKS; tick++) {
+				for (int i = 0; i < count; i++) {
+					Rectangle2D.Float hitbox = sigbins.get(i).getHitbox();
+					if (tick % 400 == turnAt[i] || hitbox.x + dirs[i] < 0 || hitbox.x + hitbox.width + dirs[i] > levelWidth)
+						dirs[i] = -dirs[i];
+					hitbox.x += dirs[i];
+				}
+				if (player.x + playerDir < 0 || player.x + player.width + playerDir > levelWidth)
+					playerDir = -playerDir;
+				player.x += playerDir;
+				attackBox.x = playerDir > 0 ? player.x + player.width + 10 : player.x - attackBox.width - 10;
+				attackBox.y = player.y + 30;
+
+				long upkeep = System.nanoTime();
+				for (int i = 0; i < count; i++)
+					grid.moved(sigbins.get(i));
+				long start = System.nanoTime();
+				Enemy oldAttack = OldFirstHit(sigbins, attackBox);
+				Enemy oldTouch = OldFirstHit(sigbins, player);
+				long mid = System.nanoTime();
+				Enemy newAttack = grid.firstHit(attackBox);
+				Enemy newTouch = grid.firstHit(player);
+				long end = System.nanoTime();
+
+				if (oldAttack != newAttack || oldTouch != newTouch)
+					throw new IllegalStateException("EnemyGrid found a different enemy than the scan at tick " + tick);
+				if (newAttack != null)
+					sink++;
+				if (timed) {
+					oldTime += mid - start;
+					newTime += end - mid;
+					upkeepTime += start - upkeep;
+				}
+			}
+		}
+
+		long ticks = (long) TICKS * (ROUNDS - ROUNDS / 2);
+		System.out.printf("%8d %12.0f %12.0f %7.2fx %16.2f%n", count, oldTime / (double) ticks, newTime / (double) ticks,
+				oldTime / (double) newTime, upkeepTime / (double) ticks / count);
+		if (sink == 42)
+			System.out.println(); // keeps the JIT from dropping the queries
+	}
+
+	// EnemyManager.checkEnemyHit / checkPlayerHit as they were, for the Sigbin list
+	private static Enemy OldFirstHit(ArrayList<Enemy> sigbins, Rectangle2D.Float box) {
+		for (Enemy s : sigbins)
+			if (s.isActive() && box.intersects(s.getHitbox()))
+				return s;
+		return null;
+	}
+
+	// A flat floor two tiles thick and count Sigbins standing on it, spread over the whole level
+	private static LevelLayout CreateStressLayout(int count, Random random) {
+		int height = Game.TILES_IN_HEIGHT;
+		LevelLayout layout = new LevelLayout(WIDTH, height);
+		for (int j = height - 2; j < height; j++)
+			for (int i = 0; i < WIDTH; i++)
+				layout.lvlData[j][i] = 1;
+		for (int i = 0; i < count; i++)
+			layout.addSpawn(SIGBIN, 1 + random.nextInt(WIDTH - 4), height - 3);
+		return layout;
+	}
+}
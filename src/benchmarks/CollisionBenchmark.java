@@ -0,0 +1,361 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+
+import levels.CollisionMap;
+import levels.LevelLayout;
+import levels.WalkableSpans;
+import main.Game;
+import utilz.LoadSave;
+
+// Collision queries on the bitset CollisionMap against the int[][] lookups they replaced.
+// "old" is the previous HelpMethods.IsSolid / IsTileSolid / 8 point CanMoveHere, the wall / floor
+// snapping and the tile by tile IsAllTilesWalkable, copied here as they were. "new" is the exact box
+// test, CollisionMap.sweep and the per row counts behind CollisionMap.isWalkable.
+// The sight checks are enemy to player spans of up to 40 tiles (the most canSeePlayer allows) starting
+// on a floor, so they usually run until a gap or a wall rather than failing on the first tile.
+// "patrol" walks enemies back and forth on the floor: old is CanMoveHere plus IsFloor every step (on
+// the bitset map), new checks the WalkableSpans limits, kept per direction and worked out again
+// when they no longer hold, like Enemy.canWalk does. Both have to end up with every walker in the same place.
+// Before timing, every box the new test calls free must also be free for the old one, and the
+// boxes only the new test catches (tiles between the sample points) are counted. Sweeps from free
+// boxes, some of them above the screen, must end where canMoveHere agrees the box is free.
+//
+// The queries are hitbox sized boxes scattered over the level, a mix of open air, floors and walls.
+// Level 1 is the real level, the generated ones show what happens once the level no longer fits in cache.
+//
+// Usage: java -Djava.awt.headless=true benchmarks.CollisionBenchmark
+public class CollisionBenchmark {
+
+	private static final int QUERIES = 1 << 16;
+	private static final int ROUNDS = 40;
+	private static final int HEIGHT = Game.TILES_IN_HEIGHT;
+
+	public static void main(String[] args) throws IOException {
+		System.out.printf("%-14s %-22s %10s %10s %8s%n", "level", "query", "old ns", "new ns", "speedup");
+		Run("level 1", LoadSave.GetLevelLayout("1"));
+		for (int width : new int[] { 1000, 10000 })
+			Run(width + " wide", CreateLayout(width, new Random(width)));
+	}
+
+	// player, sigbin and tikbalang hitboxes
+	private static final float[][] HITBOXES = { { 115, 230 }, { 230, 144 }, { 368, 345 } };
+
+	private static void Run(String name, LevelLayout layout) {
+		int[][] lvlData = layout.lvlData;
+		CollisionMap map = new CollisionMap(layout.getSolidRows(), layout.width);
+
+		Random random = new Random(42);
+		float[] xs = new float[QUERIES], ys = new float[QUERIES], dxs = new float[QUERIES], dys = new float[QUERIES];
+		int[] tileXs = new int[QUERIES], tileYs = new int[QUERIES];
+		int[] sightXs = new int[QUERIES], sightYs = new int[QUERIES], spans = new int[QUERIES];
+		float levelWidth = layout.width * Game.TILES_SIZE;
+		for (int i = 0; i < QUERIES; i++) {
+			xs[i] = random.nextFloat() * (levelWidth + 200) - 100; // a few off either end
+			ys[i] = random.nextFloat() * (Game.GAME_HEIGHT + 200) - 150;
+			dxs[i] = random.nextFloat() * 40 - 20; // up to a dash and a bit per tick
+			dys[i] = random.nextFloat() * 40 - 20;
+			tileXs[i] = random.nextInt(layout.width + 4) - 2;
+			tileYs[i] = random.nextInt(HEIGHT + 4) - 2;
+			sightXs[i] = random.nextInt(layout.width);
+			sightYs[i] = FloorRow(lvlData, sightXs[i]);
+			spans[i] = random.nextInt(41);
+		}
+
+		for (int i = 0; i < QUERIES; i++)
+			if (OldIsTileSolid(tileXs[i], tileYs[i], lvlData) != map.isSolidTile(tileXs[i], tileYs[i]))
+				throw new IllegalStateException("CollisionMap disagrees with lvlData at tile query " + i);
+		for (int i = 0; i < QUERIES; i++)
+			if (OldIsAllTilesWalkable(sightXs[i], sightXs[i] + spans[i], sightYs[i], lvlData) != map.isWalkable(sightXs[i], sightXs[i] + spans[i], sightYs[i]))
+				throw new IllegalStateException("CollisionMap disagrees with lvlData at sight query " + i);
+
+		CollisionMap.Hit hit = new CollisionMap.Hit();
+		int sink = 0;
+		for (float[] box : HITBOXES) {
+			float w = box[0], h = box[1];
+
+			// boxes the 8 sample points call free although a solid tile is inside them
+			int missed = 0;
+			for (int i = 0; i < QUERIES; i++) {
+				boolean oldFree = OldCanMoveHere(xs[i], ys[i], w, h, lvlData);
+				boolean newFree = map.canMoveHere(xs[i], ys[i], w, h);
+				if (newFree && !oldFree)
+					throw new IllegalStateException("CollisionMap misses a tile the old check found at query " + i);
+				if (oldFree && !newFree)
+					missed++;
+			}
+			CheckSweeps(map, w, h, new Random(QUERIES + (int) w));
+
+			long[] oldTime = new long[2], newTime = new long[2];
+			for (int round = 0; round < ROUNDS; round++) {
+				boolean timed = round >= ROUNDS / 2; // first half is warm up
+
+				long start = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++)
+					if (OldCanMoveHere(xs[i], ys[i], w, h, lvlData))
+						sink++;
+				long mid = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++)
+					if (map.canMoveHere(xs[i], ys[i], w, h))
+						sink++;
+				long end = System.nanoTime();
+				if (timed) {
+					oldTime[0] += mid - start;
+					newTime[0] += end - mid;
+				}
+
+				// a move, vertical then horizontal like the entities do it: old = test the destination and
+				// snap next to the wall if blocked, new = a sweep per axis
+				start = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++)
+					sink += (int) OldMove(xs[i], ys[i], w, h, dxs[i], dys[i], lvlData);
+				mid = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++) {
+					map.sweep(xs[i], ys[i], w, h, 0, dys[i], hit);
+					map.sweep(xs[i], hit.y, w, h, dxs[i], 0, hit);
+					sink += (int) (hit.x + hit.y);
+				}
+				end = System.nanoTime();
+				if (timed) {
+					oldTime[1] += mid - start;
+					newTime[1] += end - mid;
+				}
+			}
+
+			String size = (int) w + "x" + (int) h;
+			Print(name, "CanMoveHere " + size, oldTime[0], newTime[0]);
+			Print(name, "move " + size, oldTime[1], newTime[1]);
+			Patrol(name, size, map, w, h, xs, ys);
+			System.out.printf("%-14s %-22s %d of %d boxes the 8 points called free have a solid tile inside%n", name, "", missed, QUERIES);
+		}
+
+		long oldTime = 0, newTime = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++)
+				if (OldIsTileSolid(tileXs[i], tileYs[i], lvlData))
+					sink++;
+			long mid = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++)
+				if (map.isSolidTile(tileXs[i], tileYs[i]))
+					sink++;
+			long end = System.nanoTime();
+			if (round >= ROUNDS / 2) {
+				oldTime += mid - start;
+				newTime += end - mid;
+			}
+		}
+		Print(name, "IsTileSolid", oldTime, newTime);
+
+		oldTime = 0;
+		newTime = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++)
+				if (OldIsAllTilesWalkable(sightXs[i], sightXs[i] + spans[i], sightYs[i], lvlData))
+					sink++;
+			long mid = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++)
+				if (map.isWalkable(sightXs[i], sightXs[i] + spans[i], sightYs[i]))
+					sink++;
+			long end = System.nanoTime();
+			if (round >= ROUNDS / 2) {
+				oldTime += mid - start;
+				newTime += end - mid;
+			}
+		}
+		Print(name, "IsAllTilesWalkable", oldTime, newTime);
+		if (sink == 42)
+			System.out.println(); // keeps the JIT from dropping the loops
+	}
+
+	// Horizontal, vertical and diagonal sweeps of up to three tiles from boxes canMoveHere calls free,
+	// reaching up to a few tiles above the screen and past either end of the level. Wherever the
+	// sweep stops, hit or not, the box has to be free there and inside the level.
+	private static void CheckSweeps(CollisionMap map, float w, float h, Random random) {
+		CollisionMap.Hit hit = new CollisionMap.Hit();
+		float levelWidth = map.getWidth() * Game.TILES_SIZE, reach = 3 * Game.TILES_SIZE;
+		for (int i = 0; i < QUERIES; i++) {
+			float x = random.nextFloat() * (levelWidth + 200) - 100;
+			float y = random.nextFloat() * (Game.GAME_HEIGHT + h + reach) - h - reach;
+			if (!map.canMoveHere(x, y, w, h))
+				continue;
+			float dx = random.nextFloat() * 2 * reach - reach, dy = random.nextFloat() * 2 * reach - reach;
+			switch (i % 3) {
+				case 0 -> dy = 0;
+				case 1 -> dx = 0;
+			}
+			map.sweep(x, y, w, h, dx, dy, hit);
+			if (hit.x < 0 || hit.x + w >= levelWidth || !map.canMoveHere(hit.x, hit.y, w, h))
+				throw new IllegalStateException("Sweep from " + x + ", " + y + " by " + dx + ", " + dy + " ends at " + hit.x + ", " + hit.y
+						+ " where a " + w + "x" + h + " box doesn't fit");
+		}
+	}
+
+	private static final int WALKERS = 1024, STEPS = 2000;
+
+	private static void Patrol(String name, String size, CollisionMap map, float w, float h, float[] xs, float[] ys) {
+		WalkableSpans spans = new WalkableSpans(map);
+		float speed = 0.3f * Game.SCALE;
+		float[] startX = new float[WALKERS], startY = new float[WALKERS];
+		CollisionMap.Hit hit = new CollisionMap.Hit();
+		for (int i = 0; i < WALKERS; i++) { // dropped onto whatever is below
+			startX[i] = xs[i];
+			startY[i] = map.sweep(xs[i], ys[i], w, h, 0, Game.GAME_HEIGHT, hit) ? hit.y : ys[i];
+		}
+
+		float[] oldX = new float[WALKERS], newX = new float[WALKERS], dirs = new float[WALKERS];
+		WalkableSpans.Bounds[] lefts = new WalkableSpans.Bounds[WALKERS], rights = new WalkableSpans.Bounds[WALKERS];
+		long oldTime = 0, newTime = 0;
+		for (int round = 0; round < ROUNDS / 4; round++) {
+			System.arraycopy(startX, 0, oldX, 0, WALKERS);
+			for (int i = 0; i < WALKERS; i++)
+				dirs[i] = i % 2 == 0 ? speed : -speed;
+			long start = System.nanoTime();
+			for (int step = 0; step < STEPS; step++) {
+				for (int i = 0; i < WALKERS; i++) {
+					float x = oldX[i], dx = dirs[i];
+					float corner = dx < 0 ? x + dx : x + w + dx;
+					if (map.canMoveHere(x + dx, startY[i], w, h) && map.isSolid(corner, startY[i] + h + 1))
+						oldX[i] = x + dx;
+					else
+						dirs[i] = -dx;
+				}
+			}
+			long mid = System.nanoTime();
+
+			System.arraycopy(startX, 0, newX, 0, WALKERS);
+			for (int i = 0; i < WALKERS; i++) {
+				dirs[i] = i % 2 == 0 ? speed : -speed;
+				lefts[i] = new WalkableSpans.Bounds();
+				rights[i] = new WalkableSpans.Bounds();
+			}
+			for (int step = 0; step < STEPS; step++) {
+				for (int i = 0; i < WALKERS; i++) {
+					float x = newX[i], dx = dirs[i];
+					WalkableSpans.Bounds b = dx < 0 ? lefts[i] : rights[i];
+					float corner = dx < 0 ? x + dx : x + w + dx;
+					if (b.x != x || b.version < 0)
+						spans.getPatrolBounds(x, startY[i], w, h, dx < 0, b);
+					if (b.stuck) {
+						// inside a wall, Enemy.canWalk checks each step the long way then
+						if (map.canMoveHere(x + dx, startY[i], w, h) && map.isSolid(corner, startY[i] + h + 1))
+							newX[i] = x + dx;
+						else
+							dirs[i] = -dx;
+						continue;
+					}
+					if (x + dx >= b.boxMin && x + dx + w < b.boxMax && corner >= b.floorMin && corner < b.floorMax) {
+						newX[i] = b.x = x + dx;
+					} else {
+						dirs[i] = -dx;
+					}
+				}
+			}
+			long end = System.nanoTime();
+			if (round >= ROUNDS / 8) {
+				oldTime += mid - start;
+				newTime += end - mid;
+			}
+		}
+		for (int i = 0; i < WALKERS; i++)
+			if (oldX[i] != newX[i])
+				throw new IllegalStateException("WalkableSpans walker " + i + " ended at " + newX[i] + " instead of " + oldX[i]);
+
+		long steps = (long) WALKERS * STEPS * (ROUNDS / 4 - ROUNDS / 8);
+		System.out.printf("%-14s %-22s %10.2f %10.2f %7.2fx%n", name, "patrol " + size, oldTime / (double) steps, newTime / (double) steps,
+				oldTime / (double) newTime);
+	}
+
+	private static void Print(String name, String query, long oldTime, long newTime) {
+		long calls = (long) QUERIES * (ROUNDS / 2);
+		System.out.printf("%-14s %-22s %10.2f %10.2f %7.2fx%n", name, query, oldTime / (double) calls, newTime / (double) calls,
+				oldTime / (double) newTime);
+	}
+
+	// Random terrain: a floor, platforms and walls, roughly a third of the tiles solid
+	private static LevelLayout CreateLayout(int width, Random random) {
+		LevelLayout layout = new LevelLayout(width, HEIGHT);
+		for (int j = 0; j < HEIGHT; j++)
+			for (int i = 0; i < width; i++)
+				if (j >= HEIGHT - 2 || random.nextInt(4) == 0)
+					layout.lvlData[j][i] = 1 + random.nextInt(11);
+		return layout;
+	}
+
+	// vertical then horizontal, like Player.updatePos did with GetEntityYPosUnderRoofOrAboveFloor / GetEntityXPosNextToWall
+	private static float OldMove(float x, float y, float w, float h, float dx, float dy, int[][] lvlData) {
+		if (OldCanMoveHere(x, y + dy, w, h, lvlData))
+			y += dy;
+		else if (dy > 0)
+			y = ((int) (y / Game.TILES_SIZE) + 4) * Game.TILES_SIZE - h - 1;
+		else
+			y = (int) (y / Game.TILES_SIZE) * Game.TILES_SIZE;
+
+		if (OldCanMoveHere(x + dx, y, w, h, lvlData))
+			x += dx;
+		else if (dx > 0)
+			x = ((int) ((x + w) / Game.TILES_SIZE) + 1) * Game.TILES_SIZE - w - 0.1f;
+		else
+			x = (int) (x / Game.TILES_SIZE) * Game.TILES_SIZE + 0.1f;
+		return x + y;
+	}
+
+	private static boolean OldCanMoveHere(float x, float y, float width, float height, int[][] lvlData) {
+		if (OldIsSolid(x, y, lvlData))
+			return false;
+		if (OldIsSolid(x + width, y + height, lvlData))
+			return false;
+		if (OldIsSolid(x + width, y, lvlData))
+			return false;
+		if (OldIsSolid(x, y + height, lvlData))
+			return false;
+		if (OldIsSolid(x + width / 2, y, lvlData))
+			return false;
+		if (OldIsSolid(x + width, y + height / 2, lvlData))
+			return false;
+		if (OldIsSolid(x + width / 2, y + height, lvlData))
+			return false;
+		if (OldIsSolid(x, y + height / 2, lvlData))
+			return false;
+		return true;
+	}
+
+	private static boolean OldIsSolid(float x, float y, int[][] lvlData) {
+		int maxWidth = lvlData[0].length * Game.TILES_SIZE;
+		if (x < 0 || x >= maxWidth)
+			return true;
+		if (y >= Game.GAME_HEIGHT)
+			return true;
+		if (y < 0)
+			return false;
+		int xIndex = (int) (x / Game.TILES_SIZE);
+		int yIndex = (int) (y / Game.TILES_SIZE);
+		return lvlData[yIndex][xIndex] != 0;
+	}
+
+	// the lowest open tile with something solid under it in column x, where an enemy would stand
+	private static int FloorRow(int[][] lvlData, int x) {
+		for (int y = HEIGHT - 2; y >= 0; y--)
+			if (lvlData[y][x] == 0 && lvlData[y + 1][x] != 0)
+				return y;
+		return HEIGHT - 1;
+	}
+
+	private static boolean OldIsAllTilesWalkable(int xStart, int xEnd, int y, int[][] lvlData) {
+		for (int i = 0; i < xEnd - xStart; i++) {
+			if (OldIsTileSolid(xStart + i, y, lvlData))
+				return false;
+			if (!OldIsTileSolid(xStart + i, y + 1, lvlData))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean OldIsTileSolid(int xTile, int yTile, int[][] lvlData) {
+		if (xTile < 0 || xTile >= lvlData[0].length || yTile < 0 || yTile >= lvlData.length)
+			return true;
+		return lvlData[yTile][xTile] != 0;
+	}
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import entities.Enemy;
+import entities.EnemyManager;
+import entities.Player;
+import levels.Level;
+import levels.LevelLayout;
+import levels.LevelManager;
+import main.Game;
+import main.Simulation;
+
+import static utilz.Constants.EnemyConstants.*;
+
+// EnemyManager.update on crowds of Sigbins and Duwendes around the player, with the decide phase
+// split over 1 to N threads (N is the first argument, the number of cores by default). Every
+// thread count has to end with every enemy and the player in exactly the same state as the single
+// threaded run. The player stands still, so the crowd closes in, attacks and gets knocked around.
+//
+// Usage: java -Djava.awt.headless=true benchmarks.EnemyUpdateBenchmark [threads]
+public class EnemyUpdateBenchmark {
+
+	private static final int WIDTH = 60; // tiles, all of the crowd is inside the view and awake
+	private static final int[] ENEMIES = { 64, 256, 1024 };
+	private static final int TICKS = 1000;
+	private static final int ROUNDS = 6;
+
+	public static void main(String[] args) {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		Simulation simulation = new Simulation();
+		System.out.printf("%8s %8s %12s %8s%n", "enemies", "threads", "us/tick", "speedup");
+		for (int count : ENEMIES) {
+			double single = 0;
+			long expected = 0;
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				long[] result = Run(simulation, count, threads);
+				if (threads == 1) {
+					single = result[0];
+					expected = result[1];
+				} else if (result[1] != expected)
+					throw new IllegalStateException(threads + " threads ended in a different state than 1 thread with " + count + " enemies");
+				System.out.printf("%8d %8d %12.1f %7.2fx%n", count, threads, result[0] / 1000.0 / TICKS, single / result[0]);
+			}
+		}
+		System.exit(0);
+	}
+
+	// { ns for the timed rounds / timed rounds, hash of the final state }
+	private static long[] Run(Simulation simulation, int count, int threads) {
+		EnemyManager enemyManager = simulation.getPlaying().getEnemyManager();
+		LevelManager levelManager = simulation.getPlaying().getLevelManager();
+		Player player = simulation.getPlaying().getPlayer();
+		enemyManager.setThreads(threads);
+
+		long time = 0, hash = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			Level level = new Level(CreateLayout(count));
+			enemyManager.loadEnemies(level);
+			player.loadCollisionMap(level.getCollisionMap());
+			player.resetAll();
+			Rectangle2D.Float hitbox = player.getHitbox();
+			hitbox.x = WIDTH / 4 * Game.TILES_SIZE;
+			hitbox.y = (Game.TILES_IN_HEIGHT - 2) * Game.TILES_SIZE - hitbox.height - 1;
+
+			long start = System.nanoTime();
+			for (int tick = 0; tick < TICKS; tick++)
+				enemyManager.update(level.getCollisionMap(), player, levelManager, 0);
+			if (round >= ROUNDS / 2) // first half is warm up
+				time += System.nanoTime() - start;
+
+			hash = Hash(level, player);
+		}
+		enemyManager.setThreads(Runtime.getRuntime().availableProcessors());
+		return new long[] { time / (ROUNDS - ROUNDS / 2), hash };
+	}
+
+	private static long Hash(Level level, Player player) {
+		long hash = Float.floatToIntBits(player.getHitbox().x) * 31L + player.getCurrentHealth();
+		for (Enemy e : level.getEnemies()) {
+			hash = hash * 31 + Float.floatToIntBits(e.getHitbox().x);
+			hash = hash * 31 + Float.floatToIntBits(e.getHitbox().y);
+			hash = hash * 31 + e.getEnemyState() * 64 + e.getAniIndex();
+			hash = hash * 31 + (e.isActive() ? 1 : 0);
+		}
+		return hash;
+	}
+
+	// A flat floor two tiles thick with a few platforms, the crowd spread over the view
+	private static LevelLayout CreateLayout(int count) {
+		Random random = new Random(count);
+		int height = Game.TILES_IN_HEIGHT;
+		LevelLayout layout = new LevelLayout(WIDTH, height);
+		for (int i = 0; i < WIDTH; i++) {
+			for (int j = height - 2; j < height; j++)
+				layout.lvlData[j][i] = 1;
+			if (random.nextInt(6) == 0)
+				layout.lvlData[height - 5][i] = 1;
+		}
+		for (int i = 0; i < count; i++)
+			layout.addSpawn(random.nextInt(3) == 0 ? DUWENDE : SIGBIN, 1 + random.nextInt(Game.TILES_IN_WIDTH), height - 3);
+		return layout;
+	}
+}
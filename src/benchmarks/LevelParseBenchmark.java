@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import levels.LevelLayout;
+import utilz.HelpMethods;
+
+import static utilz.Constants.EnemyConstants.*;
+
+// Level parsing on generated levels from 100 to 10,000 tiles wide.
+// "old" is the previous loader: GetLevelData plus one scan per enemy type, each doing getRGB + new Color per pixel.
+// "new" is HelpMethods.ParseLevel. Time per tile should stay flat as the level grows, and the bytes
+// allocated should only be the tile grid itself.
+//
+// Usage: java -Djava.awt.headless=true benchmarks.LevelParseBenchmark
+public class LevelParseBenchmark {
+
+	private static final int[] WIDTHS = { 100, 1000, 2500, 5000, 10000 };
+	private static final int HEIGHT = 14;
+	private static final int RUNS = 20;
+
+	public static void main(String[] args) {
+		System.out.printf("%8s %10s %10s %12s %12s %14s %14s%n", "width", "old ms", "new ms", "old ns/tile", "new ns/tile", "old alloc KB", "new alloc KB");
+		for (int width : WIDTHS) {
+			BufferedImage img = CreateLevelImage(width, HEIGHT, new Random(width));
+
+			// warm up both so the JIT has compiled them before we time anything
+			for (int i = 0; i < 5; i++) {
+				OldParse(img);
+				HelpMethods.ParseLevel(img);
+			}
+
+			long oldAlloc = GetAllocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < RUNS; i++)
+				OldParse(img);
+			long oldTime = (System.nanoTime() - start) / RUNS;
+			oldAlloc = (GetAllocatedBytes() - oldAlloc) / RUNS;
+
+			long newAlloc = GetAllocatedBytes();
+			start = System.nanoTime();
+			for (int i = 0; i < RUNS; i++)
+				HelpMethods.ParseLevel(img);
+			long newTime = (System.nanoTime() - start) / RUNS;
+			newAlloc = (GetAllocatedBytes() - newAlloc) / RUNS;
+
+			int tiles = width * HEIGHT;
+			System.out.printf("%8d %10.2f %10.2f %12.1f %12.1f %14d %14d%n", width, oldTime / 1e6, newTime / 1e6, oldTime / (double) tiles,
+					newTime / (double) tiles, oldAlloc / 1024, newAlloc / 1024);
+		}
+	}
+
+	// Same pixel encoding as res/lvls: red / 16 is the tile, green is an enemy type, decoded like ImageIO does a PNG with alpha
+	private static BufferedImage CreateLevelImage(int width, int height, Random random) {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+		int[] enemies = { SIGBIN, TIKBALANG, DUWENDE };
+		for (int j = 0; j < height; j++)
+			for (int i = 0; i < width; i++) {
+				int red = j >= height - 2 ? random.nextInt(16) * 16 : 11 * 16;
+				int green = random.nextInt(100) == 0 ? enemies[random.nextInt(enemies.length)] : 0;
+				img.setRGB(i, j, 0xFF000000 | red << 16 | green << 8);
+			}
+		return img;
+	}
+
+	// the four scans Level used to do, minus creating the enemies
+	private static LevelLayout OldParse(BufferedImage img) {
+		LevelLayout layout = new LevelLayout(img.getWidth(), img.getHeight());
+		for (int j = 0; j < img.getHeight(); j++)
+			for (int i = 0; i < img.getWidth(); i++) {
+				int value = new Color(img.getRGB(i, j)).getRed() / 16;
+				layout.lvlData[j][i] = value >= 16 ? 0 : value;
+			}
+		for (int type : new int[] { SIGBIN, TIKBALANG, DUWENDE })
+			for (int j = 0; j < img.getHeight(); j++)
+				for (int i = 0; i < img.getWidth(); i++)
+					if (new Color(img.getRGB(i, j)).getGreen() == type)
+						layout.addSpawn(type, i, j);
+		return layout;
+	}
+
+	private static long GetAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
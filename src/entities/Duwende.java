@@ -3,12 +3,16 @@ package entities;
 import static utilz.Constants.EnemyConstants.*;
 import static utilz.HelpMethods.*;
 import static utilz.Constants.Directions.*;
+import static utilz.Constants.MillisToTicks;
+import static utilz.Constants.LONG_AGO;
 import static utilz.Constants.GRAVITY;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.geom.Rectangle2D;
 
 import audio.AudioManager;
+import levels.CollisionMap;
+import levels.LevelManager;
 import main.Game;
 
 public class Duwende extends Enemy {
@@ -21,8 +25,8 @@ public class Duwende extends Enemy {
     private float chaseSpeed = 0.9f * Game.SCALE; // Faster than Sigbin
     
     // Variables for natural movement
-    private long lastDirectionChangeTime = 0;
-    private long minDirectionChangeDelay = 500; // milliseconds
+    private long lastDirectionChangeTick = LONG_AGO;
+    private long minDirectionChangeDelay = MillisToTicks(500); // ticks
     
     // Variables for attack control
     private boolean attackChecked = false;
@@ -30,9 +34,9 @@ public class Duwende extends Enemy {
     
     // Special ability: disappear/hide
     private boolean isInvisible = false;
-    private long lastDisappearTime = 0;
-    private int disappearCooldown = 2000; // 2 seconds cooldown
-    private int invisibilityDuration = 2000; // 2 seconds duration
+    private long lastDisappearTick = LONG_AGO;
+    private int disappearCooldown = MillisToTicks(2000); // 2 seconds cooldown
+    private int invisibilityDuration = MillisToTicks(2000); // 2 seconds duration
     private float alphaValue = 1.0f; // For transparency effects
     
     // attack hitbox
@@ -58,9 +62,12 @@ public class Duwende extends Enemy {
         attackBoxOffsetX = (int)(Game.SCALE * 10);
     }
 
-    public void update(int[][] lvlData, Player player) {
+    @Override
+    public void update(CollisionMap collision, Player player, LevelManager levelManager) {
+        tick++;
+        
         // First update behavior based on environment
-        updateBehavior(lvlData, player);
+        updateBehavior(collision, player);
         
         // Then handle animation ticks
         updateAnimationTick();
@@ -88,8 +95,7 @@ public class Duwende extends Enemy {
     
     private void updateInvisibility() {
         if (isInvisible) {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastDisappearTime > invisibilityDuration) {
+            if (tick - lastDisappearTick > invisibilityDuration) {
                 isInvisible = false;
                 alphaValue = 1.0f;
             }
@@ -98,14 +104,14 @@ public class Duwende extends Enemy {
 
     
     
-    private void updateBehavior(int[][] lvlData, Player player) {
+    private void updateBehavior(CollisionMap collision, Player player) {
         if (firstUpdate) {
-            firstUpdateCheck(lvlData);
+            firstUpdateCheck(collision);
             return;
         }
 
         if (inAir) {
-            updateInAir(lvlData);
+            updateInAir(collision);
             return;
         }
         
@@ -116,7 +122,7 @@ public class Duwende extends Enemy {
                 break;
             case RUNNING:
                 // Check if we can see the player
-                if (canSeePlayer(lvlData, player))
+                if (canSeePlayer(collision, player))
                     turnTowardsPlayer(player);
                 
                 // Check if we should hide
@@ -128,9 +134,9 @@ public class Duwende extends Enemy {
                 
                 // Move based on behavior state
                 if (enemyBehaviorState == STATE_PATROLLING)
-                    move(lvlData);
+                    move(collision);
                 else if (enemyBehaviorState == STATE_CHASING)
-                    chasePlayer(lvlData, player);
+                    chasePlayer(collision, player);
                 break;
             case ATTACK:
                 if (aniIndex == 0)
@@ -144,7 +150,7 @@ public class Duwende extends Enemy {
                 // Handle disappear animation
                 if (aniIndex == GetSpriteAmount(enemyType, enemyState) - 1) {
                     isInvisible = true;
-                    lastDisappearTime = System.currentTimeMillis();
+                    lastDisappearTick = tick;
                     newState(RUNNING);
                 }
                 break;
@@ -174,8 +180,7 @@ public class Duwende extends Enemy {
     }
     
     private boolean canDisappear() {
-        long currentTime = System.currentTimeMillis();
-        return currentTime - lastDisappearTime > disappearCooldown + invisibilityDuration;
+        return tick - lastDisappearTick > disappearCooldown + invisibilityDuration;
     }
     
     private void startDisappear() {
@@ -186,11 +191,9 @@ public class Duwende extends Enemy {
     
     protected void checkPlayerHit(Rectangle2D.Float attackBox, Player player) {
         if (!player.isInvincible() && attackBox.intersects(player.getHitbox())) {
-            player.changeHealth(-GetEnemyDmg(enemyType));
-            
             // Add knockback (less than other enemies)
             float knockbackDirection = player.getHitbox().x < hitbox.x ? -0.7f : 0.7f;
-            player.applyKnockback(knockbackDirection);
+            actions.hitPlayer(GetEnemyDmg(enemyType), knockbackDirection);
         }
         attackChecked = true;
     }
@@ -212,10 +215,9 @@ public class Duwende extends Enemy {
             enemyBehaviorState = STATE_CHASING;
             
             // Turn towards player occasionally
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastDirectionChangeTime > minDirectionChangeDelay) {
+            if (tick - lastDirectionChangeTick > minDirectionChangeDelay) {
                 turnTowardsPlayer(player);
-                lastDirectionChangeTime = currentTime;
+                lastDirectionChangeTick = tick;
             }
         }
         else {
@@ -243,10 +245,10 @@ public class Duwende extends Enemy {
             return -1;
     }
     
-    private void chasePlayer(int[][] lvlData, Player player) {
+    private void chasePlayer(CollisionMap collision, Player player) {
         // If invisible, move at normal speed
         if (isInvisible) {
-            move(lvlData);
+            move(collision);
             return;
         }
         
@@ -259,18 +261,12 @@ public class Duwende extends Enemy {
             xSpeed = chaseSpeed;
             
         // Move in current direction with floor check
-        if (CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, lvlData)) {
-            if (IsFloor(hitbox, xSpeed, lvlData)) {
-                hitbox.x += xSpeed;
-            } else {
-                // No floor ahead, change direction
-                changeWalkDir();
-                lastDirectionChangeTime = System.currentTimeMillis();
-            }
+        if (canWalk(xSpeed, collision)) {
+            hitbox.x += xSpeed;
         } else {
-            // Obstacle ahead, change direction
+            // No floor or an obstacle ahead, change direction
             changeWalkDir();
-            lastDirectionChangeTime = System.currentTimeMillis();
+            lastDirectionChangeTick = tick;
         }
     }
     
@@ -340,9 +336,11 @@ public class Duwende extends Enemy {
     }
     
     // Reset enemy to initial state
+    @Override
     public void resetEnemy() {
         hitbox.x = x;
         hitbox.y = y;
+        savePrevPosition();
         firstUpdate = true;
         currentHealth = maxHealth;
         newState(IDLE);
@@ -357,6 +355,11 @@ public class Duwende extends Enemy {
         return isInvisible;
     }
     
+    @Override
+    public boolean isVisible() {
+        return !isInvisible;
+    }
+    
     public float getAlphaValue() {
         return alphaValue;
     }
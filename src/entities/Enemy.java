@@ -7,6 +7,10 @@ import java.awt.geom.Rectangle2D;
 
 import static utilz.Constants.Directions.*;
 import static utilz.Constants.GRAVITY;
+import gameStates.RenderSnapshot;
+import levels.CollisionMap;
+import levels.LevelManager;
+import levels.WalkableSpans;
 import main.Game;
 
 public abstract class Enemy extends Entity {
@@ -27,6 +31,24 @@ public abstract class Enemy extends Entity {
     protected static final int STATE_CHASING = 1;
     protected static final int STATE_ATTACKING = 2;
     
+    // Every enemy counts its own updates, timers compare against this instead of System.currentTimeMillis()
+    protected long tick;
+    
+    // where EnemyGrid has this enemy: the order it was added in, the tile columns it is filed under
+    // and the pixels those cover
+    int gridIndex, gridFirstCol, gridLastCol;
+    float gridLeft, gridRight;
+    // where EnemyRegistry has this enemy: its slot and the order it was added in
+    int registrySlot, registryOrder;
+    
+    // what this update did to the player and the audio, EnemyManager applies it after every enemy decided
+    final EnemyActions actions = new EnemyActions();
+    
+    // patrol limits from the level's WalkableSpans, one set per direction
+    protected WalkableSpans spans;
+    private final WalkableSpans.Bounds patrolLeft = new WalkableSpans.Bounds();
+    private final WalkableSpans.Bounds patrolRight = new WalkableSpans.Bounds();
+    
     public Enemy(float x, float y, int width, int height, int enemyType) {
         super(x, y, width, height);
         this.enemyType = enemyType;
@@ -37,8 +59,8 @@ public abstract class Enemy extends Entity {
     }
     
     // Added methods from reference
-    protected void firstUpdateCheck(int[][] lvlData) {
-        if (!IsEntityOnFloor(hitbox, lvlData))
+    protected void firstUpdateCheck(CollisionMap collision) {
+        if (!IsEntityOnFloor(hitbox, collision))
             inAir = true;
         firstUpdate = false;
         tileY = (int) (hitbox.y / Game.TILES_SIZE);  // Initialize tileY
@@ -46,22 +68,22 @@ public abstract class Enemy extends Entity {
     
     protected void checkPlayerHit(Rectangle2D.Float attackBox, Player player) {
         if (attackBox.intersects(player.hitbox))
-            player.changeHealth(-GetEnemyDmg(enemyType));
+            actions.damagePlayer(GetEnemyDmg(enemyType));
         attackChecked = true;
     }
     
-    protected void updateInAir(int[][] lvlData) {
-        if (CanMoveHere(hitbox.x, hitbox.y + fallSpeed, hitbox.width, hitbox.height, lvlData)) {
+    protected void updateInAir(CollisionMap collision) {
+        if (!Sweep(hitbox, 0, fallSpeed, collision, contact)) {
             hitbox.y += fallSpeed;
             fallSpeed += GRAVITY;
         } else {
             inAir = false;
-            hitbox.y = GetEntityYPosUnderRoofOrAboveFloor(hitbox, fallSpeed);
+            hitbox.y = contact.y;
             tileY = (int) (hitbox.y / Game.TILES_SIZE);
         }
     }
     
-    protected void move(int[][] lvlData) {
+    protected void move(CollisionMap collision) {
         float xSpeed = 0;
 
         if (walkDir == LEFT)
@@ -69,14 +91,47 @@ public abstract class Enemy extends Entity {
         else
             xSpeed = walkSpeed;
 
-        if (CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, lvlData))
-            if (IsFloor(hitbox, xSpeed, lvlData)) {
-                hitbox.x += xSpeed;
-                return;
-            }
+        if (canWalk(xSpeed, collision)) {
+            hitbox.x += xSpeed;
+            return;
+        }
 
         changeWalkDir();
     }
+    
+    public void loadWalkableSpans(WalkableSpans spans) {
+        this.spans = spans;
+        patrolLeft.version = -1;
+        patrolRight.version = -1;
+    }
+    
+    // Whether a step of xSpeed keeps the enemy clear of walls with floor under its leading edge, the
+    // same answer as CanMoveHere and IsFloor. Usually a few comparisons against the limits from
+    // WalkableSpans, which are only worked out again after turning around or being moved some other
+    // way. Callers move the hitbox by xSpeed when this says yes.
+    protected boolean canWalk(float xSpeed, CollisionMap collision) {
+        if (spans == null)
+            return CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, collision) && IsFloor(hitbox, xSpeed, collision);
+        
+        WalkableSpans.Bounds patrol = xSpeed < 0 ? patrolLeft : patrolRight;
+        if (patrol.x != hitbox.x || patrol.y != hitbox.y || patrol.version != spans.getVersion())
+            spans.getPatrolBounds(hitbox.x, hitbox.y, hitbox.width, hitbox.height, xSpeed < 0, patrol);
+        if (patrol.stuck) // inside something solid, check the step the long way
+            return CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, collision) && IsFloor(hitbox, xSpeed, collision);
+        
+        float x = hitbox.x + xSpeed;
+        float corner = xSpeed < 0 ? x : hitbox.x + hitbox.width + xSpeed; // the corners IsFloor looks under
+        if (x >= patrol.boxMin && x + hitbox.width < patrol.boxMax && corner >= patrol.floorMin && corner < patrol.floorMax) {
+            patrol.x = x; // still good from there
+            return true;
+        }
+        return false;
+    }
+
+    // Random seed for enemies that roll dice, fixed per spawn point so runs can be replayed exactly
+    protected static long GetSpawnSeed(float spawnX, float spawnY) {
+        return 31L * Float.floatToIntBits(spawnX) + Float.floatToIntBits(spawnY);
+    }
 
     // Player interaction methods
     protected void turnTowardsPlayer(Player player) {
@@ -86,7 +141,7 @@ public abstract class Enemy extends Entity {
             walkDir = LEFT;
     }
     
-    protected boolean canSeePlayer(int[][] lvlData, Player player) {
+    protected boolean canSeePlayer(CollisionMap collision, Player player) {
         int playerTileY = (int) (player.getHitbox().y / Game.TILES_SIZE);
         
         // Allow bigger vertical tolerance (4 tiles up or down)
@@ -96,7 +151,7 @@ public abstract class Enemy extends Entity {
                 int sightCheckTile = Math.min(tileY, playerTileY);
                 
                 // Make sure the path is clear
-                if (IsSightClear(lvlData, hitbox, player.hitbox, sightCheckTile)) {
+                if (IsSightClear(collision, hitbox, player.hitbox, sightCheckTile)) {
                     return true;
                 }
             }
@@ -157,6 +212,32 @@ public abstract class Enemy extends Entity {
     public boolean isActive() {
     	return active;
     }
+    
+    // one tick of the enemy, EnemyManager runs every type through this
+    public abstract void update(CollisionMap collision, Player player, LevelManager levelManager);
+    
+    // back to how it spawned, for a level restart
+    public abstract void resetEnemy();
+    
+    // sprite flipping, every enemy type faces walkDir
+    public abstract int flipX();
+    
+    public abstract int flipW();
+    
+    // EnemyManager stops updating enemies far outside the view, except the ones that say no here
+    public boolean isAlwaysAwake() {
+    	return false;
+    }
+    
+    // false while the enemy should not be drawn (Duwende hiding)
+    public boolean isVisible() {
+    	return true;
+    }
+    
+    // copy of what the renderer needs, taken at the end of an update
+    public RenderSnapshot.Sprite getRenderSprite() {
+    	return new RenderSnapshot.Sprite(enemyType, enemyState, aniIndex, prevHitboxX, prevHitboxY, hitbox.x, hitbox.y, flipX(), flipW(), isVisible());
+    }
 
     public int getAniIndex() {
         return aniIndex;
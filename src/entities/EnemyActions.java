@@ -0,0 +1,74 @@
+package entities;
+
+import java.util.Arrays;
+
+import audio.AudioManager;
+
+// What an enemy did to the world outside itself during its update: damage and knockback for the
+// player, sounds and music. Enemies update in parallel, so instead of touching the player or the
+// audio they record it here, and EnemyManager runs every enemy's actions afterwards, one enemy at a
+// time in update order. The player stays the same for every enemy while they decide.
+class EnemyActions {
+
+	private static final int DAMAGE = 0, HIT = 1, SOUND = 2, MUSIC = 3;
+
+	private int[] kinds = new int[4];
+	private int[] amounts = new int[4];
+	private float[] directions = new float[4];
+	private String[] sounds = new String[4];
+	private int count = 0;
+
+	// changeHealth(-amount), which the player ignores while invincible
+	void damagePlayer(int amount) {
+		add(DAMAGE, amount, 0, null);
+	}
+
+	// damage and knockback together, skipped if the player became invincible earlier in the tick
+	void hitPlayer(int amount, float knockbackDirection) {
+		add(HIT, amount, knockbackDirection, null);
+	}
+
+	void playSFX(String path) {
+		add(SOUND, 0, 0, path);
+	}
+
+	// stops whatever music is playing first
+	void playMusic(String path) {
+		add(MUSIC, 0, 0, path);
+	}
+
+	void apply(Player player) {
+		for (int i = 0; i < count; i++) {
+			switch (kinds[i]) {
+				case DAMAGE -> player.changeHealth(-amounts[i]);
+				case HIT -> {
+					if (!player.isInvincible()) {
+						player.changeHealth(-amounts[i]);
+						player.applyKnockback(directions[i]);
+					}
+				}
+				case SOUND -> AudioManager.playSFX(sounds[i]);
+				case MUSIC -> {
+					AudioManager.stopMusic();
+					AudioManager.playMusic(sounds[i]);
+				}
+			}
+			sounds[i] = null;
+		}
+		count = 0;
+	}
+
+	private void add(int kind, int amount, float direction, String sound) {
+		if (count == kinds.length) {
+			kinds = Arrays.copyOf(kinds, count * 2);
+			amounts = Arrays.copyOf(amounts, count * 2);
+			directions = Arrays.copyOf(directions, count * 2);
+			sounds = Arrays.copyOf(sounds, count * 2);
+		}
+		kinds[count] = kind;
+		amounts[count] = amount;
+		directions[count] = direction;
+		sounds[count] = sound;
+		count++;
+	}
+}
@@ -0,0 +1,111 @@
+package entities;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import main.Game;
+
+// Enemies bucketed by the tile columns their hitbox covers, so a hit check only looks at the enemies
+// in the columns the box covers instead of every enemy in the level.
+//
+// An enemy is in every column its hitbox touches. Enemies left or right of the level go in the
+// first or last column. moved() puts an enemy into its new columns, and only does any work when it
+// crossed into another column. Call it after anything that moves a hitbox.
+//
+// Every enemy gets a number when it is added. When several enemies are hit, the lowest number wins,
+// which is the spawn order EnemyManager adds them in.
+public class EnemyGrid {
+
+	private final Enemy[][] cells;
+	private final int[] cellSize;
+	private final int width; // in tiles
+	private int count = 0;
+
+	public EnemyGrid(int width) {
+		this.width = width;
+		cells = new Enemy[width][];
+		cellSize = new int[width];
+	}
+
+	public void add(Enemy e) {
+		e.gridIndex = count++;
+		int firstCol = GetCol(e.hitbox.x, width), lastCol = GetCol(e.hitbox.x + e.hitbox.width, width);
+		for (int col = firstCol; col <= lastCol; col++)
+			insert(col, e);
+		file(e, firstCol, lastCol);
+	}
+
+	public void moved(Enemy e) {
+		if (e.hitbox.x >= e.gridLeft && e.hitbox.x + e.hitbox.width < e.gridRight)
+			return; // still inside the same columns, the usual case
+		int firstCol = GetCol(e.hitbox.x, width), lastCol = GetCol(e.hitbox.x + e.hitbox.width, width);
+		for (int col = e.gridFirstCol; col <= e.gridLastCol; col++)
+			if (col < firstCol || col > lastCol)
+				remove(col, e);
+		for (int col = firstCol; col <= lastCol; col++)
+			if (col < e.gridFirstCol || col > e.gridLastCol)
+				insert(col, e);
+		file(e, firstCol, lastCol);
+	}
+
+	// remembers the columns and the pixels they cover, the edge columns reach out forever
+	private void file(Enemy e, int firstCol, int lastCol) {
+		e.gridFirstCol = firstCol;
+		e.gridLastCol = lastCol;
+		e.gridLeft = firstCol == 0 ? Float.NEGATIVE_INFINITY : firstCol * Game.TILES_SIZE;
+		e.gridRight = lastCol == width - 1 ? Float.POSITIVE_INFINITY : (lastCol + 1) * Game.TILES_SIZE;
+	}
+
+	public void remove(Enemy e) {
+		for (int col = e.gridFirstCol; col <= e.gridLastCol; col++)
+			remove(col, e);
+	}
+
+	// The first enemy added that is active, visible and overlaps box, or null
+	public Enemy firstHit(Rectangle2D.Float box) {
+		int firstCol = GetCol(box.x, width), lastCol = GetCol(box.x + box.width, width);
+		Enemy first = null;
+		for (int col = firstCol; col <= lastCol; col++) {
+			Enemy[] cell = cells[col];
+			for (int i = 0, n = cellSize[col]; i < n; i++) {
+				Enemy e = cell[i];
+				// an enemy spanning several columns is seen once per column, the index check skips the repeats
+				if ((first == null || e.gridIndex < first.gridIndex) && e.isActive() && e.isVisible() && box.intersects(e.hitbox))
+					first = e;
+			}
+		}
+		return first;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	private void insert(int col, Enemy e) {
+		Enemy[] cell = cells[col];
+		if (cell == null)
+			cell = cells[col] = new Enemy[4];
+		else if (cellSize[col] == cell.length)
+			cell = cells[col] = Arrays.copyOf(cell, cell.length * 2);
+		cell[cellSize[col]++] = e;
+	}
+
+	// order inside a cell doesn't matter, so the last one takes the removed one's place
+	private void remove(int col, Enemy e) {
+		Enemy[] cell = cells[col];
+		int last = --cellSize[col];
+		for (int i = 0; i <= last; i++) {
+			if (cell[i] == e) {
+				cell[i] = cell[last];
+				cell[last] = null;
+				return;
+			}
+		}
+		throw new IllegalStateException("Enemy missing from grid column " + col);
+	}
+
+	private static int GetCol(float x, int width) {
+		int col = (int) Math.floor(x / Game.TILES_SIZE);
+		return Math.max(0, Math.min(width - 1, col));
+	}
+}
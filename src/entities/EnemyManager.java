@@ -3,221 +3,265 @@ package entities;
 import java.awt.Graphics;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import gameStates.Playing;
+import gameStates.RenderSnapshot;
+import levels.CollisionMap;
 import levels.Level;
 import levels.LevelManager;
+import levels.WalkableSpans;
 import main.Game;
 import utilz.LoadSave;
+import utilz.Profiler;
+import utilz.SpriteCache;
 import static utilz.Constants.EnemyConstants.*;
 
 public class EnemyManager {
 
     private Playing playing;
-    private BufferedImage[][] sigbinArr;
-    private BufferedImage[][] tikbalangArr;
-    private BufferedImage[][] duwendeArr;
+    // scaled to their draw size once, then drawn 1:1
+    private SpriteCache.Sheet sigbinSheet;
+    private SpriteCache.Sheet tikbalangSheet;
+    private SpriteCache.Sheet duwendeSheet;
     
-    private ArrayList<Sigbin> sigbins = new ArrayList<>();
-    private ArrayList<Tikbalang> tikbalangs = new ArrayList<>(); 
-    private ArrayList<Duwende> duwendes = new ArrayList<>(); 
+    // every enemy of the level, active ones first
+    private EnemyRegistry enemies = new EnemyRegistry();
+    // every enemy of the level by tile column, for the hit checks
+    private EnemyGrid grid = new EnemyGrid(1);
+    private WalkableSpans spans;
+    
+    // Enemies this far outside the view sleep: no update at all until the view comes back near them.
+    // Sprites hang at most 4 tiles off their hitbox, so a sleeping enemy is never on screen.
+    private static final float SLEEP_DISTANCE = 4 * Game.TILES_SIZE;
+    // the part of the level that is awake, in pixels, everything until the first update
+    private float awakeLeft = Float.NEGATIVE_INFINITY, awakeRight = Float.POSITIVE_INFINITY;
+    // the enemies updated this tick, in registry order
+    private Enemy[] awake = new Enemy[16];
+    private int awakeCount = 0;
+    
+    // Enemy updates are split over this pool once enough enemies are awake, null keeps them on the game thread
+    private ForkJoinPool pool;
+    private static final int PARALLEL_MIN = 64; // below this waking the workers costs more than it saves
+    private static final int CHUNK = 16; // enemies per task
     
 
     public EnemyManager(Playing playing) {
         this.playing = playing;
         loadEnemyImgs();
+        setThreads(Runtime.getRuntime().availableProcessors());
+    }
+    
+    // threads for the enemy updates, 1 updates them all on the game thread
+    public void setThreads(int threads) {
+        if (pool != null)
+            pool.shutdown();
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
     }
     
     
     public void loadEnemies(Level level) {
-        sigbins = level.getSigbins();
-        tikbalangs = level.getTikbalangs();
-        duwendes = level.getDuwendes(); 
+        enemies = new EnemyRegistry();
+        grid = new EnemyGrid(level.getCollisionMap().getWidth());
+        spans = level.getWalkableSpans();
+        awakeLeft = Float.NEGATIVE_INFINITY;
+        awakeRight = Float.POSITIVE_INFINITY;
+        for (Enemy e : level.getEnemies())
+            addEnemy(e);
+    }
+    
+    // Enemies can come and go while the level runs, both are O(1)
+    public void addEnemy(Enemy e) {
+        enemies.add(e);
+        grid.add(e);
+        e.loadWalkableSpans(spans); // patrols turn at the ends of the level's floor runs
+    }
+    
+    public void removeEnemy(Enemy e) {
+        enemies.remove(e);
+        grid.remove(e);
     }
 
-    public void update(int[][] lvlData, Player player, LevelManager levelManager) {
-        boolean isAnyActive = false;
+    public void update(CollisionMap collision, Player player, LevelManager levelManager, int xLvlOffset) {
+        // sleeping enemies are still active, the level isn't done while any are left
+        boolean isAnyActive = enemies.getActiveCount() > 0;
+        awakeLeft = xLvlOffset - SLEEP_DISTANCE;
+        awakeRight = xLvlOffset + Game.GAME_WIDTH + SLEEP_DISTANCE;
         
-        // Update regular enemies
-        for (Sigbin s : sigbins) {
-            if(s.isActive()) {
-                s.update(lvlData, player);
-                isAnyActive = true;
-            }
+        // which enemies run this tick, picked before any of them moves
+        awakeCount = 0;
+        for (int i = 0; i < enemies.getActiveCount(); i++) {
+            Enemy e = enemies.get(i);
+            if (!isAwake(e))
+                continue;
+            if (awakeCount == awake.length)
+                awake = Arrays.copyOf(awake, awakeCount * 2);
+            awake[awakeCount++] = e;
         }
         
-        // Update boss enemies
-        for (Tikbalang t : tikbalangs) {
-            if(t.isActive()) {
-                t.update(lvlData, player, levelManager );
-                isAnyActive = true;
-            }
-        }
+        // Sense and decide: every enemy updates itself, reading the level and the player but changing
+        // neither, so they can run in any order on any thread. Damage, knockback and sounds wait in
+        // each enemy's actions.
+        if (pool != null && awakeCount >= PARALLEL_MIN) {
+            long workerCollision = pool.invoke(new Decide(collision, player, levelManager, 0, awakeCount));
+            Profiler.AddPending(Profiler.COLLISION, workerCollision); // the workers' collision time counts too
+        } else
+            decide(collision, player, levelManager, 0, awakeCount);
         
-        // Update duwende enemies
-        for (Duwende d : duwendes) {
-            if(d.isActive()) {
-                d.update(lvlData, player);
-                isAnyActive = true;
-            }
+        // Apply, on this thread in update order, so the result is the same however the updates were split
+        for (int i = 0; i < awakeCount; i++) {
+            Enemy e = awake[i];
+            e.actions.apply(player);
+            grid.moved(e);
+            if (!e.isActive())
+                enemies.deactivate(e);
         }
         
         if(!isAnyActive)
             playing.setLevelCompleted(true);
     }
 
-    public void draw(Graphics g, int xLvlOffset) {
-        drawSigbins(g, xLvlOffset);
-        drawTikbalangs(g, xLvlOffset);
-        drawDuwendes(g, xLvlOffset); 
+    private void decide(CollisionMap collision, Player player, LevelManager levelManager, int from, int to) {
+        for (int i = from; i < to; i++) {
+            awake[i].savePrevPosition();
+            awake[i].update(collision, player, levelManager);
+        }
     }
-
-    private void drawSigbins(Graphics g, int xLvlOffset) {
-        for (Sigbin c : sigbins) {
-            if(c.isActive()) {
-                g.drawImage(sigbinArr[c.getEnemyState()][c.getAniIndex()], 
-                           (int) c.getHitbox().x - xLvlOffset - SIGBIN_DRAWOFFSET_X + c.flipX(),
-                           (int) c.getHitbox().y - SIGBIN_DRAWOFFSET_Y, 
-                           SIGBIN_WIDTH * c.flipW(), 
-                           SIGBIN_HEIGHT, null);
-                
-//                 c.drawHitbox(g, xLvlOffset); // Uncomment for debugging
+    
+    // awake[from] to awake[to - 1], halved until a chunk is small enough to update in one go.
+    // Returns the collision time the chunks spent.
+    private class Decide extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        
+        private final CollisionMap collision;
+        private final Player player;
+        private final LevelManager levelManager;
+        private final int from, to;
+        
+        Decide(CollisionMap collision, Player player, LevelManager levelManager, int from, int to) {
+            this.collision = collision;
+            this.player = player;
+            this.levelManager = levelManager;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Long compute() {
+            if (to - from <= CHUNK) {
+                decide(collision, player, levelManager, from, to);
+                return Profiler.Take(Profiler.COLLISION);
             }
+            int mid = (from + to) >>> 1;
+            Decide left = new Decide(collision, player, levelManager, from, mid), right = new Decide(collision, player, levelManager, mid, to);
+            invokeAll(left, right);
+            return left.join() + right.join();
         }
     }
     
-    // Add this method
-    private void drawTikbalangs(Graphics g, int xLvlOffset) {
-        for (Tikbalang t : tikbalangs) {
-            if(t.isActive()) {
-                g.drawImage(tikbalangArr[t.getEnemyState()][t.getAniIndex()], 
-                           (int) t.getHitbox().x - xLvlOffset - TIKBALANG_DRAWOFFSET_X + t.flipX(),
-                           (int) t.getHitbox().y - TIKBALANG_DRAWOFFSET_Y, 
-                           TIKBALANG_WIDTH * t.flipW(), 
-                           TIKBALANG_HEIGHT, null);
-                
-//                 t.drawHitbox(g, xLvlOffset); // Uncomment for debugging
+    private boolean isAwake(Enemy e) {
+        return e.isAlwaysAwake() || (e.hitbox.x + e.hitbox.width >= awakeLeft && e.hitbox.x <= awakeRight);
+    }
+
+    // Draws from the snapshot only, so this is safe to call while the game thread is updating
+    public void draw(Graphics g, RenderSnapshot.Sprite[] enemies, int xLvlOffset, float alpha) {
+        for (RenderSnapshot.Sprite s : enemies) {
+            if (!s.visible) // Skip drawing if duwende is invisible
+                continue;
             
+            switch (s.spriteId) {
+                case SIGBIN -> drawEnemy(g, sigbinSheet, s, SIGBIN_DRAWOFFSET_X, SIGBIN_DRAWOFFSET_Y, xLvlOffset, alpha);
+                case TIKBALANG -> drawEnemy(g, tikbalangSheet, s, TIKBALANG_DRAWOFFSET_X, TIKBALANG_DRAWOFFSET_Y, xLvlOffset, alpha);
+                case DUWENDE -> drawEnemy(g, duwendeSheet, s, DUWENDE_DRAWOFFSET_X, DUWENDE_DRAWOFFSET_Y, xLvlOffset, alpha);
             }
         }
     }
     
-    // Add method to draw duwendes
-    private void drawDuwendes(Graphics g, int xLvlOffset) {
-        for (Duwende d : duwendes) {
-            if(d.isActive() && !d.isInvisible()) { // Skip drawing if duwende is invisible
-                g.drawImage(duwendeArr[d.getEnemyState()][d.getAniIndex()], 
-                           (int) d.getHitbox().x - xLvlOffset - DUWENDE_DRAWOFFSET_X + d.flipX(),
-                           (int) d.getHitbox().y - DUWENDE_DRAWOFFSET_Y, 
-                           DUWENDE_WIDTH * d.flipW(), 
-                           DUWENDE_HEIGHT, null);
-                
-//                 d.drawHitbox(g, xLvlOffset); // Uncomment for debugging
-            }
-        }
+    private void drawEnemy(Graphics g, SpriteCache.Sheet sheet, RenderSnapshot.Sprite s, int drawOffsetX, int drawOffsetY, int xLvlOffset, float alpha) {
+        int x = (int) s.getDrawX(alpha) - xLvlOffset - drawOffsetX + s.flipX;
+        // a negative flipW used to draw leftwards from x, the cache has the mirrored frame instead
+        if (s.flipW < 0)
+            x -= sheet.getWidth();
+        sheet.draw(g, s.state, s.aniIndex, x, (int) s.getDrawY(alpha) - drawOffsetY, s.flipW < 0);
+    }
+    
+    // Copies the active enemies that are awake for the renderer, sleeping ones are off screen anyway
+    public RenderSnapshot.Sprite[] getRenderSprites() {
+        int awake = 0;
+        for (int i = 0; i < enemies.getActiveCount(); i++)
+            if (isAwake(enemies.get(i)))
+                awake++;
+        
+        RenderSnapshot.Sprite[] sprites = new RenderSnapshot.Sprite[awake];
+        for (int i = 0, n = 0; n < awake; i++)
+            if (isAwake(enemies.get(i)))
+                sprites[n++] = enemies.get(i).getRenderSprite();
+        return sprites;
     }
     
     private void loadEnemyImgs() {
         // Load Sigbin sprites
-        sigbinArr = new BufferedImage[5][30];
+        BufferedImage[][] sigbinArr = new BufferedImage[5][30];
         BufferedImage temp = LoadSave.GetSpriteAtlas(LoadSave.SIGBIN_ATLAS);
         for (int j = 0; j < sigbinArr.length; j++)
             for (int i = 0; i < sigbinArr[j].length; i++)
                 sigbinArr[j][i] = temp.getSubimage(i * WIDTH_DEFAULT, j * HEIGHT_DEFAULT, WIDTH_DEFAULT, HEIGHT_DEFAULT);
+        sigbinSheet = SpriteCache.CreateSheet(sigbinArr, SIGBIN_WIDTH, SIGBIN_HEIGHT);
         
         // Load Tikbalang sprites - Add this section
-        tikbalangArr = new BufferedImage[6][32]; // Note: 6 states including special attack
+        BufferedImage[][] tikbalangArr = new BufferedImage[6][32]; // Note: 6 states including special attack
         BufferedImage bossTemp = LoadSave.GetSpriteAtlas(LoadSave.TIKBALANG_ATLAS);
         for (int j = 0; j < tikbalangArr.length; j++)
             for (int i = 0; i < tikbalangArr[j].length; i++)
                 tikbalangArr[j][i] = bossTemp.getSubimage(i * WIDTH_DEFAULT, j * HEIGHT_DEFAULT, WIDTH_DEFAULT, HEIGHT_DEFAULT);
+        tikbalangSheet = SpriteCache.CreateSheet(tikbalangArr, TIKBALANG_WIDTH, TIKBALANG_HEIGHT);
         
         // Load Duwende sprites
-        duwendeArr = new BufferedImage[6][32]; // 6 rows and 32 columns as per your atlas
+        BufferedImage[][] duwendeArr = new BufferedImage[6][32]; // 6 rows and 32 columns as per your atlas
         BufferedImage duwendeTemp = LoadSave.GetSpriteAtlas(LoadSave.DUWENDE_ATLAS);
         for (int j = 0; j < duwendeArr.length; j++)
             for (int i = 0; i < duwendeArr[j].length; i++)
                 duwendeArr[j][i] = duwendeTemp.getSubimage(i * WIDTH_DEFAULT, j * HEIGHT_DEFAULT, WIDTH_DEFAULT, HEIGHT_DEFAULT);
+        duwendeSheet = SpriteCache.CreateSheet(duwendeArr, DUWENDE_WIDTH, DUWENDE_HEIGHT);
     }
     
     public void checkPlayerHit(Player player) {
         if (player.isInvincible())
             return;
-            
-        // Check Sigbin enemies
-        for (Sigbin s : sigbins) {
-            if (s.isActive()) {
-                if (s.getHitbox().intersects(player.getHitbox())) {
-                    player.changeHealth(-GetEnemyDmg(SIGBIN));
-                    float knockbackDirection = player.getHitbox().x < s.getHitbox().x ? -1 : 1;
-                    player.applyKnockback(knockbackDirection);
-                    return;
-                }
-            }
-        }
-        
-        // Check Tikbalang enemies - Add this section
-        for (Tikbalang t : tikbalangs) {
-            if (t.isActive()) {
-                if (t.getHitbox().intersects(player.getHitbox())) {
-                    player.changeHealth(-GetEnemyDmg(TIKBALANG));
-                    float knockbackDirection = player.getHitbox().x < t.getHitbox().x ? -1.5f : 1.5f;
-                    player.applyKnockback(knockbackDirection);
-                    return;
-                }
-            }
-        }
         
-        // Check Duwende enemies - Only check if not invisible
-        for (Duwende d : duwendes) {
-            if (d.isActive() && !d.isInvisible()) {
-                if (d.getHitbox().intersects(player.getHitbox())) {
-                    player.changeHealth(-GetEnemyDmg(DUWENDE));
-                    float knockbackDirection = player.getHitbox().x < d.getHitbox().x ? -0.7f : 0.7f;
-                    player.applyKnockback(knockbackDirection);
-                    return;
-                }
-            }
-        }
+        // only the enemies in the player's columns, the first one touching (invisible duwendes can't) hurts
+        Enemy e = grid.firstHit(player.getHitbox());
+        if (e == null)
+            return;
+        player.changeHealth(-GetEnemyDmg(e.getEnemyType()));
+        float knockback = switch (e.getEnemyType()) {
+            case TIKBALANG -> 1.5f;
+            case DUWENDE -> 0.7f;
+            default -> 1;
+        };
+        player.applyKnockback(player.getHitbox().x < e.getHitbox().x ? -knockback : knockback);
     }
     
     public void checkEnemyHit(Rectangle2D.Float attackBox, int damage) {
-        // Check Sigbin enemies
-        for (Sigbin s : sigbins) {
-            if (s.isActive() && attackBox.intersects(s.getHitbox())) {
-                s.hurt(damage);
-                return;
-            }
-        }
-        
-        // Check Tikbalang enemies
-        for (Tikbalang t : tikbalangs) {
-            if (t.isActive() && attackBox.intersects(t.getHitbox())) {
-                t.hurt(damage / 2); // Boss takes less damage
-                return;
-            }
-        }
-        
-        // Check Duwende enemies - Cannot hit if invisible
-        for (Duwende d : duwendes) {
-            if (d.isActive() && !d.isInvisible() && attackBox.intersects(d.getHitbox())) {
-                d.hurt(damage);
-                return;
-            }
-        }
+        // only the enemies in the attack box's columns, invisible duwendes can't be hit
+        Enemy e = grid.firstHit(attackBox);
+        if (e == null)
+            return;
+        if (e.getEnemyType() == TIKBALANG)
+            e.hurt(damage / 2); // Boss takes less damage
+        else
+            e.hurt(damage);
     }
     
     public void resetAllEnemies() {
-        for (Sigbin s : sigbins)
-            s.resetEnemy();
-            
-        // Reset Tikbalang enemies 
-        for (Tikbalang t : tikbalangs)
-            t.resetEnemy();
-            
-        // Reset Duwende enemies
-        for (Duwende d : duwendes)
-            d.resetEnemy();
+        enemies.resetAll();
+        awakeLeft = Float.NEGATIVE_INFINITY;
+        awakeRight = Float.POSITIVE_INFINITY;
+        
+        // everyone is back at their spawn
+        for (int i = 0; i < enemies.size(); i++)
+            grid.moved(enemies.get(i));
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package entities;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Every enemy of the current level in one array, whatever its type. The active ones are packed at
+// the front, so the update loop runs over 0 to getActiveCount() - 1 without asking isActive(), and an
+// enemy that stops being active is swapped behind them. Adding and removing are O(1), neither keeps
+// the order, resetAll puts everyone back in the order they were added.
+public class EnemyRegistry {
+
+	private Enemy[] enemies = new Enemy[16];
+	private int count = 0, activeCount = 0;
+	private int added = 0;
+
+	public void add(Enemy e) {
+		if (count == enemies.length)
+			enemies = Arrays.copyOf(enemies, count * 2);
+		e.registryOrder = added++;
+		put(e, count++);
+		if (e.isActive())
+			swap(e.registrySlot, activeCount++);
+	}
+
+	public void remove(Enemy e) {
+		if (e.registrySlot < activeCount)
+			deactivate(e);
+		put(enemies[count - 1], e.registrySlot); // the last one fills the gap
+		enemies[--count] = null;
+		e.registrySlot = -1;
+	}
+
+	// e stopped being active, it changes places with the last active enemy
+	public void deactivate(Enemy e) {
+		swap(e.registrySlot, --activeCount);
+	}
+
+	// Resets every enemy, active or not, and puts them back in the order they were added
+	public void resetAll() {
+		Arrays.sort(enemies, 0, count, Comparator.comparingInt(e -> e.registryOrder));
+		for (int i = 0; i < count; i++) {
+			put(enemies[i], i);
+			enemies[i].resetEnemy();
+		}
+		activeCount = count;
+	}
+
+	public Enemy get(int slot) {
+		return enemies[slot];
+	}
+
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	private void swap(int a, int b) {
+		Enemy e = enemies[a];
+		put(enemies[b], a);
+		put(e, b);
+	}
+
+	private void put(Enemy e, int slot) {
+		enemies[slot] = e;
+		e.registrySlot = slot;
+	}
+}
@@ -4,6 +4,8 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.geom.Rectangle2D;
 import static utilz.Constants.EnemyConstants.*;
+
+import levels.CollisionMap;
 public abstract class Entity {
 
 	protected float x, y;
@@ -11,6 +13,12 @@ public abstract class Entity {
 	protected Rectangle2D.Float hitbox;
 	protected int aniTick, aniIndex;
 	
+	// hitbox position at the start of the current update, used to interpolate rendering
+	protected float prevHitboxX, prevHitboxY;
+	
+	// filled in by Sweep, reused every tick
+	protected CollisionMap.Hit contact = new CollisionMap.Hit();
+	
 	public Entity(float x, float y, int width, int height) {
 		this.x = x;
 		this.y = y;
@@ -34,6 +42,14 @@ public abstract class Entity {
 
 	protected void initHitbox(float x, float y, int width, int height) {
 		hitbox = new Rectangle2D.Float(x, y, width, height);
+		savePrevPosition();
+	}
+	
+	// called once at the start of every update, before the entity moves, and after teleporting
+	// (reset, level load) so the renderer doesn't streak between the two spots
+	public void savePrevPosition() {
+		prevHitboxX = hitbox.x;
+		prevHitboxY = hitbox.y;
 	}
 	
 	
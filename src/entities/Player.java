@@ -11,17 +11,22 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 
 import gameStates.Playing;
+import gameStates.RenderSnapshot;
+import levels.CollisionMap;
 import main.Game;
 import utilz.LoadSave;
+import utilz.SpriteCache;
 
 import static utilz.Constants.GRAVITY;
+import static utilz.Constants.MillisToTicks;
+import static utilz.Constants.LONG_AGO;
 
 public class Player extends Entity {
     
 	private boolean dying = false;
 	
 	// Animation variables
-    private BufferedImage[][] animations;
+    private SpriteCache.Sheet animations; // scaled to width x height once, then drawn 1:1
     private int aniSpeed = 4;
     private int playerAction = IDLE;
     
@@ -29,7 +34,7 @@ public class Player extends Entity {
     private boolean moving = false, attacking = false;
     private boolean left, right, jump;
     private float playerSpeed = 1.0f * Game.SCALE;
-    private int[][] lvlData;
+    private CollisionMap collision;
     
     // Sprite offsets for rendering
     private float xDrawOffset = 100 * Game.SCALE; 
@@ -99,8 +104,9 @@ public class Player extends Entity {
     private int attackIndex = 0; // To cycle through attacks
     private final int ATTACK_COUNT = 3; // Total number of attack animations
     private boolean attackChecked = false; // Flag to ensure we only apply damage once per attack
-    private long lastAttackTime = 0; // For combo timing
-    private long attackComboWindow = 800; // Time window in milliseconds to chain attacks (0.8 seconds)
+    private long tick = 0; // counts updates, used instead of the wall clock so replays line up
+    private long lastAttackTick = LONG_AGO; // For combo timing
+    private long attackComboWindow = MillisToTicks(800); // Time window in ticks to chain attacks (0.8 seconds)
     
     private boolean attackSoundPlayed = false;
     
@@ -126,6 +132,9 @@ public class Player extends Entity {
     
     // Main update method
     public void update() {
+        tick++;
+        savePrevPosition();
+        
         // First check if player is dying or dead
         if (dying) {
             updateAnimationTick();
@@ -248,16 +257,16 @@ public class Player extends Entity {
         }
             
         if (!inAir)
-            if (!IsEntityOnFloor(hitbox, lvlData))
+            if (!IsEntityOnFloor(hitbox, collision))
                 inAir = true;
 
         if (inAir) {
-            if (CanMoveHere(hitbox.x, hitbox.y + airSpeed, hitbox.width, hitbox.height, lvlData)) {
+            if (!Sweep(hitbox, 0, airSpeed, collision, contact)) {
                 hitbox.y += airSpeed;
                 airSpeed += GRAVITY;
                 updateXPos(xSpeed);
             } else {
-                hitbox.y = GetEntityYPosUnderRoofOrAboveFloor(hitbox, airSpeed);
+                hitbox.y = contact.y; // on the floor or against the ceiling, however far the fall was
                 if (airSpeed > 0)
                     resetInAir();
                 else
@@ -314,13 +323,13 @@ public class Player extends Entity {
         // Calculate the dash movement with dash direction
         float xSpeed = dashSpeed * dashDir;
         
-        // Check if we can move to the new position
-        if (CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, lvlData)) {
+        // Check if we can move to the new position, swept so a fast dash can't skip a thin wall
+        if (!Sweep(hitbox, xSpeed, 0, collision, contact)) {
             hitbox.x += xSpeed;
         } else {
             // Hit a wall, stop dashing
             dashing = false;
-            hitbox.x = GetEntityXPosNextToWall(hitbox, xSpeed);
+            hitbox.x = contact.x;
         }
         
         // We're definitely moving while dashing
@@ -391,25 +400,29 @@ public class Player extends Entity {
     
     
     // UI rendering
-    public void render(Graphics g, int lvlOffset) {
+    // Draws from the snapshot only, so this is safe to call while the game thread is updating
+    public void render(Graphics g, RenderSnapshot snapshot, int lvlOffset, float alpha) {
+        RenderSnapshot.Sprite s = snapshot.player;
         // If invincible, make player flash by only rendering on even frames
-        if (invincible && invincibilityTimer % 4 >= 2) {
-            // Skip rendering to create blinking effect
-        } else {
-            g.drawImage(
-                animations[playerAction][aniIndex], 
-                (int)(hitbox.x - xDrawOffset) - lvlOffset + flipX, 
-                (int)(hitbox.y - yDrawOffset), 
-                width * flipW, 
-                height, 
-                null
-            );
+        if (s.visible) {
+            int x = (int)(s.getDrawX(alpha) - xDrawOffset) - lvlOffset + s.flipX;
+            // a negative flipW used to draw leftwards from x, the cache has the mirrored frame instead
+            if (s.flipW < 0)
+                x -= width;
+            animations.draw(g, s.state, s.aniIndex, x, (int)(s.getDrawY(alpha) - yDrawOffset), s.flipW < 0);
         }
         
 //        drawAttackBox(g, lvlOffset);
 //        drawHitbox(g, lvlOffset);
         
-        drawUI(g);
+        drawUI(g, snapshot.healthWidth, snapshot.energyWidth);
+    }
+    
+    // copy of what the renderer needs, taken at the end of an update
+    public RenderSnapshot.Sprite getRenderSprite() {
+        // Skip rendering every other couple of ticks while invincible to create blinking effect
+        boolean visible = !(invincible && invincibilityTimer % 4 >= 2);
+        return new RenderSnapshot.Sprite(RenderSnapshot.PLAYER_SPRITE, playerAction, aniIndex, prevHitboxX, prevHitboxY, hitbox.x, hitbox.y, flipX, flipW, visible);
     }
     
     private void drawAttackBox(Graphics g, int lvlOffset) {
@@ -417,7 +430,7 @@ public class Player extends Entity {
         g.drawRect((int)attackBox.x - lvlOffset, (int)attackBox.y, (int)attackBox.width, (int)attackBox.height);
     }
     
-    private void drawUI(Graphics g) {
+    private void drawUI(Graphics g, int healthWidth, int energyWidth) {
         g.drawImage(statusBarImg, statusBarX, statusBarY, statusBarWidth, statusBarHeight, null);
         
         // Draw health bar
@@ -464,12 +477,10 @@ public class Player extends Entity {
     }
     
     private void updateXPos(float xSpeed) {
-        boolean canMove = CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, lvlData);
-        
-        if (canMove) {
+        if (!Sweep(hitbox, xSpeed, 0, collision, contact)) {
             hitbox.x += xSpeed;
         } else {
-            hitbox.x = GetEntityXPosNextToWall(hitbox, xSpeed);
+            hitbox.x = contact.x; // right up against the wall
         }
     }
     
@@ -551,10 +562,11 @@ public class Player extends Entity {
     private void loadAnimations() {
         BufferedImage img = LoadSave.GetSpriteAtlas(LoadSave.PLAYER_ATLAS);
 
-        animations = new BufferedImage[12][30];
-        for (int j = 0; j < animations.length; j++)
-            for (int i = 0; i < animations[j].length; i++)
-                animations[j][i] = img.getSubimage(i * 256, j * 256, 256, 256);
+        BufferedImage[][] frames = new BufferedImage[12][30];
+        for (int j = 0; j < frames.length; j++)
+            for (int i = 0; i < frames[j].length; i++)
+                frames[j][i] = img.getSubimage(i * 256, j * 256, 256, 256);
+        animations = SpriteCache.CreateSheet(frames, width, height);
         
         statusBarImg = LoadSave.GetSpriteAtlas(LoadSave.STATUS_BAR);
     }
@@ -611,9 +623,9 @@ public class Player extends Entity {
         }
     }
     
-    public void loadLvlData(int[][] lvlData) {
-        this.lvlData = lvlData;
-        if (!IsEntityOnFloor(hitbox, lvlData))
+    public void loadCollisionMap(CollisionMap collision) {
+        this.collision = collision;
+        if (!IsEntityOnFloor(hitbox, collision))
             inAir = true;
     }
     
@@ -644,9 +656,7 @@ public class Player extends Entity {
     public void setAttacking(boolean attacking) {
         // Don't allow attacking if in hit animation or dying
         if (!hit && !dying && attacking && !this.attacking) {
-            long currentTime = System.currentTimeMillis();
-            
-            if (currentTime - lastAttackTime <= attackComboWindow) {
+            if (tick - lastAttackTick <= attackComboWindow) {
                 attackIndex = (attackIndex + 1) % ATTACK_COUNT;
             } else {
                 attackIndex = 0;
@@ -668,7 +678,7 @@ public class Player extends Entity {
             this.attacking = true;
             attackChecked = false;
             resetAniTick();
-            lastAttackTime = currentTime;
+            lastAttackTick = tick;
         }
     }
     
@@ -690,6 +700,14 @@ public class Player extends Entity {
         this.jump = jump;
     } 
     
+    public int getHealthWidth() {
+        return healthWidth;
+    }
+    
+    public int getEnergyWidth() {
+        return energyWidth;
+    }
+    
     public int getCurrentHealth() {
 		return currentHealth;
 	}
@@ -706,6 +724,7 @@ public class Player extends Entity {
         // Reset entity position (super.x and super.y)
         super.x = hitbox.x;
         super.y = hitbox.y;
+        savePrevPosition();
     }
     
     public boolean isLeft() {
@@ -725,10 +744,12 @@ public class Player extends Entity {
         // Apply a horizontal knockback
         float knockbackStrength = 3.0f * Game.SCALE;
         
-        // Check if we can move to the knocked-back position
-        float newX = hitbox.x + (direction * knockbackStrength);
-        if (CanMoveHere(newX, hitbox.y, hitbox.width, hitbox.height, lvlData)) {
-            hitbox.x = newX;
+        // Pushed back as far as the knockback goes or up to a wall, whichever comes first
+        float knockback = direction * knockbackStrength;
+        if (!Sweep(hitbox, knockback, 0, collision, contact)) {
+            hitbox.x += knockback;
+        } else {
+            hitbox.x = contact.x;
         }
         
         // Also make the player jump slightly if on ground
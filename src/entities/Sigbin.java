@@ -3,10 +3,14 @@ package entities;
 import static utilz.Constants.EnemyConstants.*;
 import static utilz.HelpMethods.*;
 import static utilz.Constants.Directions.*;
+import static utilz.Constants.MillisToTicks;
+import static utilz.Constants.LONG_AGO;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.geom.Rectangle2D;
 
+import levels.CollisionMap;
+import levels.LevelManager;
 import main.Game;
 
 public class Sigbin extends Enemy {
@@ -16,8 +20,8 @@ public class Sigbin extends Enemy {
     private float chaseSpeed = 0.6f * Game.SCALE;
     
     // Variables to make chase more natural
-    private long lastDirectionChangeTime = 0;
-    private long minDirectionChangeDelay = 0; // milliseconds
+    private long lastDirectionChangeTick = LONG_AGO;
+    private long minDirectionChangeDelay = MillisToTicks(0); // ticks
     
     // Variables for attack control
     private boolean attackChecked = false;
@@ -48,9 +52,12 @@ public class Sigbin extends Enemy {
     }
     
     
-    public void update(int[][] lvlData, Player player) {
+    @Override
+    public void update(CollisionMap collision, Player player, LevelManager levelManager) {
+        tick++;
+        
         // First update behavior based on environment
-        updateBehavior(lvlData, player);
+        updateBehavior(collision, player);
         
         // Then handle animation ticks
         updateAnimationTick();
@@ -65,14 +72,14 @@ public class Sigbin extends Enemy {
     }
 
     // Renamed from updateMove to match reference code
-    private void updateBehavior(int[][] lvlData, Player player) {
+    private void updateBehavior(CollisionMap collision, Player player) {
         if (firstUpdate) {
-            firstUpdateCheck(lvlData);
+            firstUpdateCheck(collision);
             return;
         }
 
         if (inAir) {
-            updateInAir(lvlData);
+            updateInAir(collision);
             return;
         }
         
@@ -83,16 +90,16 @@ public class Sigbin extends Enemy {
                 break;
             case RUNNING:
                 // Check if we can see the player to determine chase or attack
-                if (canSeePlayer(lvlData, player))
+                if (canSeePlayer(collision, player))
                     turnTowardsPlayer(player);
                 if (isPlayerCloseForAttack(player))
                     newState(ATTACK);
                 
                 // Move based on behavior state
                 if (enemyBehaviorState == STATE_PATROLLING)
-                    move(lvlData);
+                    move(collision);
                 else if (enemyBehaviorState == STATE_CHASING)
-                    chasePlayer(lvlData, player);
+                    chasePlayer(collision, player);
                 break;
             case ATTACK:
                 if (aniIndex == 0)
@@ -117,11 +124,9 @@ public class Sigbin extends Enemy {
     // Added from reference code - checks if player is hit by enemy attack
     protected void checkPlayerHit(Rectangle2D.Float attackBox, Player player) {
         if (!player.isInvincible() && attackBox.intersects(player.getHitbox())) {
-            player.changeHealth(-GetEnemyDmg(enemyType));
-            
             // Add knockback
             float knockbackDirection = player.getHitbox().x < hitbox.x ? -1 : 1;
-            player.applyKnockback(knockbackDirection);
+            actions.hitPlayer(GetEnemyDmg(enemyType), knockbackDirection);
         }
         attackChecked = true;
     }
@@ -145,10 +150,9 @@ public class Sigbin extends Enemy {
             enemyBehaviorState = STATE_CHASING;
             
             // Turn towards player occasionally
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastDirectionChangeTime > minDirectionChangeDelay) {
+            if (tick - lastDirectionChangeTick > minDirectionChangeDelay) {
                 turnTowardsPlayer(player);
-                lastDirectionChangeTime = currentTime;
+                lastDirectionChangeTick = tick;
             }
         }
         // If player is not in sight, go back to patrolling
@@ -172,7 +176,7 @@ public class Sigbin extends Enemy {
             return -1;
     }
     
-    private void chasePlayer(int[][] lvlData, Player player) {
+    private void chasePlayer(CollisionMap collision, Player player) {
         float xSpeed;
         
         // Use appropriate speed based on direction
@@ -182,18 +186,12 @@ public class Sigbin extends Enemy {
             xSpeed = chaseSpeed;
             
         // Move in current direction with floor check
-        if (CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, lvlData)) {
-            if (IsFloor(hitbox, xSpeed, lvlData)) {
-                hitbox.x += xSpeed;
-            } else {
-                // No floor ahead, change direction
-                changeWalkDir();
-                lastDirectionChangeTime = System.currentTimeMillis();
-            }
+        if (canWalk(xSpeed, collision)) {
+            hitbox.x += xSpeed;
         } else {
-            // Obstacle ahead, change direction
+            // No floor or an obstacle ahead, change direction
             changeWalkDir();
-            lastDirectionChangeTime = System.currentTimeMillis();
+            lastDirectionChangeTick = tick;
         }
     }
     
@@ -246,9 +244,11 @@ public class Sigbin extends Enemy {
     }
     
     // Reset enemy to initial state
+    @Override
     public void resetEnemy() {
         hitbox.x = x;
         hitbox.y = y;
+        savePrevPosition();
         firstUpdate = true;
         currentHealth = maxHealth;
         newState(IDLE);
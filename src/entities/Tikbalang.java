@@ -4,11 +4,15 @@ import static utilz.Constants.EnemyConstants.*;
 import static utilz.HelpMethods.*;
 import static utilz.Constants.Directions.*;
 import static utilz.Constants.GRAVITY;
+import static utilz.Constants.MillisToTicks;
+import static utilz.Constants.LONG_AGO;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.geom.Rectangle2D;
+import java.util.Random;
 
 import audio.AudioManager;
+import levels.CollisionMap;
 import levels.LevelManager;
 import main.Game;
 
@@ -31,10 +35,13 @@ public class Tikbalang extends Enemy {
     private float horizontalJumpSpeed;
     
     // Timers
-    private long lastDirectionChangeTime = 0;
-    private long minDirectionChangeDelay = 500; // milliseconds
-    private int specialAttackCooldown = 4000; // 6 seconds cooldown
-    private long lastSpecialAttackTime = 0;
+    private long lastDirectionChangeTick = LONG_AGO;
+    private long minDirectionChangeDelay = MillisToTicks(500); // ticks
+    private int specialAttackCooldown = MillisToTicks(4000); // 6 seconds cooldown
+    private long lastSpecialAttackTick = LONG_AGO;
+    
+    // seeded from the spawn point so the boss makes the same choices every run (replays)
+    private Random random;
     private boolean specialAttackAnimComplete = false;
     
     // Attack boxes
@@ -65,6 +72,8 @@ public class Tikbalang extends Enemy {
         
         // Boss moves faster
         walkSpeed = 0.5f * Game.SCALE;
+        
+        random = new Random(GetSpawnSeed(this.x, this.y));
     }
     
     private void initAttackBoxes() {
@@ -75,9 +84,12 @@ public class Tikbalang extends Enemy {
         specialAttackBox = new Rectangle2D.Float(x, y, (int)(200 * Game.SCALE), (int)(50 * Game.SCALE));
     }
     
-    public void update(int[][] lvlData, Player player, LevelManager levelManager) {
+    @Override
+    public void update(CollisionMap collision, Player player, LevelManager levelManager) {
+        tick++;
+        
         // First update behavior based on environment
-        updateBehavior(lvlData, player);
+        updateBehavior(collision, player);
         
         updateStrengthBasedOnLevel(levelManager, player);
         
@@ -95,7 +107,7 @@ public class Tikbalang extends Enemy {
         	chaseSpeed = 1.2f;
             jumpHeight = -5.0f * Game.SCALE;
             if (currentHealth <=40) 
-            	specialAttackCooldown = 1100;
+            	specialAttackCooldown = MillisToTicks(1100);
             else if(currentHealth <= 100)
             	chaseSpeed = 10;
         }
@@ -104,7 +116,7 @@ public class Tikbalang extends Enemy {
     private void resetStrength() {
     	chaseSpeed = 0.8f;
     	jumpHeight = -4.0f * Game.SCALE;
-    	specialAttackCooldown =  6000;
+    	specialAttackCooldown =  MillisToTicks(6000);
     }
     
     private void updateAttackBoxes() {
@@ -134,21 +146,26 @@ public class Tikbalang extends Enemy {
     }
     
     @Override
-    protected boolean canSeePlayer(int[][] lvlData, Player player) {
+    protected boolean canSeePlayer(CollisionMap collision, Player player) {
         // Use the parent method to check if player is visible
-        boolean canSee = super.canSeePlayer(lvlData, player);
+        boolean canSee = super.canSeePlayer(collision, player);
         
         // If the boss sees the player for the first time, change the music
         if (canSee && !playerSpotted) {
             playerSpotted = true;
             // Stop the current background music and play boss music
-            AudioManager.stopMusic();
-            AudioManager.playMusic("res/audio/boss_bg_music.wav");
+            actions.playMusic("res/audio/boss_bg_music.wav");
         }
         
         return canSee;
     }
     
+    // The boss has to see the player coming from further than the view reaches to start its music
+    @Override
+    public boolean isAlwaysAwake() {
+        return true;
+    }
+    
     @Override
     protected boolean isPlayerCloseForAttack(Player player) {
         // Get player and Tikbalang positions
@@ -173,18 +190,18 @@ public class Tikbalang extends Enemy {
         return inHorizontalRange && inVerticalRange;
     }
     
-    private void updateBehavior(int[][] lvlData, Player player) {
+    private void updateBehavior(CollisionMap collision, Player player) {
         if (firstUpdate) {
-            firstUpdateCheck(lvlData);
+            firstUpdateCheck(collision);
             return;
         }
         
         if (inAir) {
             // Handle special logic for diving attack when in air
             if (jumpingForSpecialAttack) {
-                handleSpecialAttackJump(lvlData, player);
+                handleSpecialAttackJump(collision, player);
             } else {
-                updateInAir(lvlData);
+                updateInAir(collision);
             }
             return;
         }
@@ -196,7 +213,7 @@ public class Tikbalang extends Enemy {
                 break;
             case RUNNING:
                 // Check if we can see the player 
-                if (canSeePlayer(lvlData, player))
+                if (canSeePlayer(collision, player))
                     turnTowardsPlayer(player);
                 
                 // Check for attack opportunities
@@ -207,9 +224,9 @@ public class Tikbalang extends Enemy {
                 
                 // Move based on behavior state
                 if (bossBehaviorState == STATE_PATROLLING)
-                    move(lvlData);
+                    move(collision);
                 else if (bossBehaviorState == STATE_CHASING)
-                    chasePlayer(lvlData, player);
+                    chasePlayer(collision, player);
                 break;
             case ATTACK:
                 if (aniIndex == 0)
@@ -219,7 +236,7 @@ public class Tikbalang extends Enemy {
                 if (aniIndex == 28 && !attackChecked) {
                     checkPlayerHit(attackBox, player);
                     // Play attack sound
-                    AudioManager.playSFX("res/audio/boss_attack.wav");
+                    actions.playSFX("res/audio/boss_attack.wav");
                 }
                 break;
             case SPECIAL_ATTACK:
@@ -291,8 +308,7 @@ public class Tikbalang extends Enemy {
     }
     
     private boolean canDoSpecialAttack() {
-        long currentTime = System.currentTimeMillis();
-        return currentTime - lastSpecialAttackTime >= specialAttackCooldown;
+        return tick - lastSpecialAttackTick >= specialAttackCooldown;
     }
     
     
@@ -301,7 +317,7 @@ public class Tikbalang extends Enemy {
         isDoingSpecialAttack = true;
         newState(SPECIAL_ATTACK);
         specialAttackAnimComplete = false; // Reset animation completion flag
-        lastSpecialAttackTime = System.currentTimeMillis();
+        lastSpecialAttackTick = tick;
         
         // Calculate target X position (the player's position)
         specialAttackTargetX = player.getHitbox().x;
@@ -325,7 +341,7 @@ public class Tikbalang extends Enemy {
         }
         
         // Play special attack sound
-        AudioManager.playSFX("res/audio/boss_special.wav");
+        actions.playSFX("res/audio/boss_special.wav");
     }
     
     @Override
@@ -348,32 +364,32 @@ public class Tikbalang extends Enemy {
         }
     }
     
-    private void handleSpecialAttackJump(int[][] lvlData, Player player) {
+    private void handleSpecialAttackJump(CollisionMap collision, Player player) {
         // Going up phase
         if (fallSpeed < 0) {
-            // Try to move both horizontally and vertically
-            float nextX = hitbox.x + horizontalJumpSpeed;
-            float nextY = hitbox.y + fallSpeed;
-            
-            // Check if we can move to the new position
-            if (CanMoveHere(nextX, nextY, hitbox.width, hitbox.height, lvlData)) {
-                hitbox.x = nextX;
-                hitbox.y = nextY;
+            // Try to move both horizontally and vertically, swept so the jump stops at the first wall or ceiling
+            if (!Sweep(hitbox, horizontalJumpSpeed, fallSpeed, collision, contact)) {
+                hitbox.x += horizontalJumpSpeed;
+                hitbox.y += fallSpeed;
                 fallSpeed += GRAVITY;
             } else {
-                // Check if we can move just vertically
-                if (CanMoveHere(hitbox.x, nextY, hitbox.width, hitbox.height, lvlData)) {
-                    hitbox.y = nextY;
-                    fallSpeed += GRAVITY;
+                hitbox.x = contact.x;
+                hitbox.y = contact.y;
+                if (contact.normalX != 0) {
+                    // Hit a wall, stop horizontal movement and keep rising for the rest of the tick
+                    horizontalJumpSpeed = 0;
+                    float rest = fallSpeed * (1 - contact.time);
+                    if (Sweep(hitbox, 0, rest, collision, contact)) {
+                        hitbox.y = contact.y;
+                        fallSpeed = 0;
+                    } else {
+                        hitbox.y += rest;
+                        fallSpeed += GRAVITY;
+                    }
                 } else {
                     // Hit ceiling, reverse direction
                     fallSpeed = 0;
                 }
-                
-                // If we hit a wall, stop horizontal movement
-                if (!CanMoveHere(nextX, hitbox.y, hitbox.width, hitbox.height, lvlData)) {
-                    horizontalJumpSpeed = 0;
-                }
             }
         } 
         // Coming down phase
@@ -381,28 +397,22 @@ public class Tikbalang extends Enemy {
             // Fall faster during special attack for dramatic effect
             fallSpeed += GRAVITY * 2f;
             
-            // Try to move both horizontally and vertically
-            float nextX = hitbox.x + horizontalJumpSpeed;
-            float nextY = hitbox.y + fallSpeed;
-            
-            // First check if we can move horizontally
-            boolean canMoveHorizontally = CanMoveHere(nextX, hitbox.y, hitbox.width, hitbox.height, lvlData);
-            if (canMoveHorizontally) {
-                hitbox.x = nextX;
-            } else {
-                // Hit a wall, stop horizontal movement
+            // First move horizontally, stopping at a wall
+            if (Sweep(hitbox, horizontalJumpSpeed, 0, collision, contact)) {
+                hitbox.x = contact.x;
                 horizontalJumpSpeed = 0;
+            } else {
+                hitbox.x += horizontalJumpSpeed;
             }
             
-            // Then check if we can move vertically
-            if (CanMoveHere(hitbox.x, nextY, hitbox.width, hitbox.height, lvlData)) {
-                hitbox.y = nextY;
+            // Then vertically, the dive is fast enough to skip a platform without the sweep
+            if (!Sweep(hitbox, 0, fallSpeed, collision, contact)) {
+                hitbox.y += fallSpeed;
             } else {
                 // We've hit the ground!
                 
-                // Find the exact ground position and add a small offset
-                int maxTileY = (int)((hitbox.y + hitbox.height + fallSpeed) / Game.TILES_SIZE);
-                hitbox.y = maxTileY * Game.TILES_SIZE - hitbox.height - 1; // Add a 1-pixel offset
+                // Land just above the ground
+                hitbox.y = contact.y;
                 
                 // Reset air state
                 inAir = false;
@@ -416,7 +426,7 @@ public class Tikbalang extends Enemy {
                     checkSpecialAttackHit(player);
                     
                     // Play impact sound
-                    AudioManager.playSFX("res/audio/boss_impact.wav");
+                    actions.playSFX("res/audio/boss_impact.wav");
                 }
                 
                 // Return to running state after special attack
@@ -430,46 +440,32 @@ public class Tikbalang extends Enemy {
     private void checkSpecialAttackHit(Player player) {
         // Check if player is hit by special attack
         if (!player.isInvincible() && specialAttackBox.intersects(player.getHitbox())) {
-            // Special attack deals more damage
-            player.changeHealth(-25);
-            
-            // Stronger knockback from special attack
+            // Special attack deals more damage, with a stronger knockback
             float knockbackDirection = player.getHitbox().x < hitbox.x ? -2 : 2;
-            player.applyKnockback(knockbackDirection);
+            actions.hitPlayer(25, knockbackDirection);
         }
     }
     
     @Override
-    protected void updateInAir(int[][] lvlData) {
-        if (CanMoveHere(hitbox.x, hitbox.y + fallSpeed, hitbox.width, hitbox.height, lvlData)) {
+    protected void updateInAir(CollisionMap collision) {
+        if (!Sweep(hitbox, 0, fallSpeed, collision, contact)) {
             // Can move, continue falling
             hitbox.y += fallSpeed;
             fallSpeed += GRAVITY;
         } else {
-            // Collision detected
-            
-            if (fallSpeed > 0) {
-                // We're falling and hit something below us
-                int maxTileY = (int)((hitbox.y + hitbox.height + fallSpeed) / Game.TILES_SIZE);
-                hitbox.y = maxTileY * Game.TILES_SIZE - hitbox.height - 20; // Add 1-pixel offset
+            // Collision detected, contact.y is just above the floor or right under the ceiling
+            hitbox.y = contact.y;
+            if (fallSpeed > 0)
                 inAir = false;
-                fallSpeed = 0;
-            } else {
-                // Hit ceiling
-                int minTileY = (int)(hitbox.y / Game.TILES_SIZE);
-                hitbox.y = minTileY * Game.TILES_SIZE + Game.TILES_SIZE;
-                fallSpeed = 0;
-            }
+            fallSpeed = 0;
         }
     }
     
     protected void checkPlayerHit(Rectangle2D.Float attackBox, Player player) {
         if (!player.isInvincible() && attackBox.intersects(player.getHitbox())) {
-            player.changeHealth(-GetEnemyDmg(enemyType));
-            
             // Add knockback
             float knockbackDirection = player.getHitbox().x < hitbox.x ? -1 : 1;
-            player.applyKnockback(knockbackDirection);
+            actions.hitPlayer(GetEnemyDmg(enemyType), knockbackDirection);
         }
         attackChecked = true;
     }
@@ -491,7 +487,7 @@ public class Tikbalang extends Enemy {
             bossBehaviorState = STATE_SPECIAL_ATTACK;
             
             // Occasionally use special attack when in range
-            if (Math.random() < 0.1) { // 1% chance per frame when in range
+            if (random.nextDouble() < 0.1) { // 1% chance per frame when in range
                 startSpecialAttack(player);
             }
         }
@@ -499,10 +495,9 @@ public class Tikbalang extends Enemy {
             bossBehaviorState = STATE_CHASING;
             
             // Turn towards player occasionally
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastDirectionChangeTime > minDirectionChangeDelay) {
+            if (tick - lastDirectionChangeTick > minDirectionChangeDelay) {
                 turnTowardsPlayer(player);
-                lastDirectionChangeTime = currentTime;
+                lastDirectionChangeTick = tick;
             }
         }
         else {
@@ -532,7 +527,7 @@ public class Tikbalang extends Enemy {
     }
     
     // Chase player at a faster speed
-    private void chasePlayer(int[][] lvlData, Player player) {
+    private void chasePlayer(CollisionMap collision, Player player) {
         float xSpeed;
         
         // Use chase speed which is faster than walk speed
@@ -542,18 +537,12 @@ public class Tikbalang extends Enemy {
             xSpeed = chaseSpeed;
             
         // Move in current direction with floor check
-        if (CanMoveHere(hitbox.x + xSpeed, hitbox.y, hitbox.width, hitbox.height, lvlData)) {
-            if (IsFloor(hitbox, xSpeed, lvlData)) {
-                hitbox.x += xSpeed;
-            } else {
-                // No floor ahead, change direction
-                changeWalkDir();
-                lastDirectionChangeTime = System.currentTimeMillis();
-            }
+        if (canWalk(xSpeed, collision)) {
+            hitbox.x += xSpeed;
         } else {
-            // Obstacle ahead, change direction
+            // No floor or an obstacle ahead, change direction
             changeWalkDir();
-            lastDirectionChangeTime = System.currentTimeMillis();
+            lastDirectionChangeTick = tick;
         }
         
         
@@ -628,10 +617,12 @@ public class Tikbalang extends Enemy {
     }
     
     // Reset boss to initial state
+    @Override
     public void resetEnemy() {
     	resetStrength();
         hitbox.x = x;
         hitbox.y = y;
+        savePrevPosition();
         firstUpdate = true;
         currentHealth = maxHealth;
         newState(IDLE);
@@ -639,7 +630,8 @@ public class Tikbalang extends Enemy {
         fallSpeed = 0;
         isDoingSpecialAttack = false;
         jumpingForSpecialAttack = false;
-        lastSpecialAttackTime = 0;
+        lastSpecialAttackTick = LONG_AGO;
+        random = new Random(GetSpawnSeed(x, y));
         playerSpotted = false; // Reset the player spotted flag
     }
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package gameStates;
 
 public enum Gamestate {
 
-	PLAYING, MENU, OPTIONS, QUIT;
+	PLAYING, MENU, OPTIONS, QUIT, LOADING;
 
 	public static Gamestate state = MENU;
 
@@ -0,0 +1,145 @@
+package gameStates;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import audio.AudioManager;
+import main.Game;
+import utilz.LoadSave;
+
+// Shown while the startup assets decode. The images and sounds don't depend on each other, so they
+// are decoded in parallel on a small pool straight into the LoadSave / AudioManager caches. Only when
+// all of them are in does Game build Menu, Playing and the rest on the game thread, which then finds
+// everything cached instead of decoding it one file after another.
+public class Loading extends State implements StateMethods {
+
+	// biggest first, so the long decodes start right away and the small ones fill in around them
+	private static final String[] IMAGES = { LoadSave.TIKBALANG_ATLAS, LoadSave.PLAYER_ATLAS, LoadSave.SIGBIN_ATLAS, LoadSave.DUWENDE_ATLAS,
+			LoadSave.PARALLAX_2, LoadSave.COMPLETED_IMG, LoadSave.PAUSED_BACKGROUND, LoadSave.OPTIONS_BACKGROUND, LoadSave.PARALLAX_3,
+			LoadSave.PARALLAX_1, LoadSave.LEVEL_MAIN_BG, LoadSave.MENU_BACKGROUND, LoadSave.DEATH_SCREEN, LoadSave.MENU_BUTTONS,
+			LoadSave.LEVEL_ATLAS, LoadSave.STATUS_BAR, LoadSave.URM_BUTTONS, LoadSave.SOUND_BUTTONS, LoadSave.VOLUME_BUTTONS };
+	private static final String[] LEVEL_1_IMAGES = { LoadSave.INSTRUCTION_LEFT, LoadSave.INSTRUCTION_RIGHT, LoadSave.INSTRUCTION_JUMP,
+			LoadSave.INSTRUCTION_DASH, LoadSave.INSTRUCTION_ATTACK, LoadSave.INSTRUCTION_DEFEAT };
+	private static final String[] SOUNDS = { "res/audio/boss_special.wav", "res/audio/boss_impact.wav", "res/audio/hit.wav",
+			"res/audio/death.wav", "res/audio/boss_attack.wav", "res/audio/jump.wav", "res/audio/attack_3.wav", "res/audio/dash.wav",
+			"res/audio/attack_1.wav", "res/audio/attack_2.wav" };
+
+	private final int total = IMAGES.length + LEVEL_1_IMAGES.length + SOUNDS.length;
+	private final AtomicInteger loaded = new AtomicInteger();
+	private CompletableFuture<Void> assets;
+	private ExecutorService pool;
+	private int threads;
+	private long startTime, assetsTime;
+
+	public Loading(Game game) {
+		super(game);
+	}
+
+	public void start() {
+		startTime = System.nanoTime();
+		threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "Asset loader");
+			t.setDaemon(true);
+			return t;
+		});
+
+		CompletableFuture<?>[] tasks = new CompletableFuture<?>[total];
+		int i = 0;
+		for (String image : IMAGES)
+			tasks[i++] = load(() -> LoadSave.GetSpriteAtlas(image));
+		for (String image : LEVEL_1_IMAGES)
+			tasks[i++] = load(() -> LoadSave.GetSpriteAtlas(image, 0));
+		for (String sound : SOUNDS)
+			tasks[i++] = load(() -> AudioManager.preloadSFX(sound));
+
+		assets = CompletableFuture.allOf(tasks).whenComplete((result, error) -> {
+			assetsTime = System.nanoTime() - startTime;
+			pool.shutdown();
+		});
+	}
+
+	private CompletableFuture<Void> load(Runnable task) {
+		return CompletableFuture.runAsync(task, pool).whenComplete((result, error) -> {
+			if (error != null)
+				error.printStackTrace();
+			loaded.incrementAndGet();
+		});
+	}
+
+	public boolean isDone() {
+		return assets != null && assets.isDone();
+	}
+
+	@Override
+	public void update() {
+		// the states are built on the game thread, once everything they need is decoded
+		if (isDone())
+			game.finishLoading();
+	}
+
+	private static final Font FONT = new Font(Font.SANS_SERIF, Font.BOLD, (int) (12 * Game.SCALE));
+
+	@Override
+	public void draw(Graphics g) {
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, Game.GAME_WIDTH, Game.GAME_HEIGHT);
+
+		int barWidth = Game.GAME_WIDTH / 3;
+		int barHeight = (int) (8 * Game.SCALE);
+		int x = (Game.GAME_WIDTH - barWidth) / 2;
+		int y = Game.GAME_HEIGHT / 2;
+
+		g.setColor(Color.DARK_GRAY);
+		g.fillRect(x, y, barWidth, barHeight);
+		g.setColor(new Color(160, 20, 20));
+		g.fillRect(x, y, barWidth * loaded.get() / total, barHeight);
+
+		g.setColor(Color.WHITE);
+		g.setFont(FONT);
+		g.drawString("LOADING", x, y - barHeight);
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public long getAssetsTime() {
+		return assetsTime;
+	}
+
+	@Override
+	public void mouseClicked(MouseEvent e) {
+	}
+
+	@Override
+	public void mousePressed(MouseEvent e) {
+	}
+
+	@Override
+	public void mouseReleased(MouseEvent e) {
+	}
+
+	@Override
+	public void mouseMoved(MouseEvent e) {
+	}
+
+	@Override
+	public void keyPressed(KeyEvent e) {
+	}
+
+	@Override
+	public void keyReleased(KeyEvent e) {
+	}
+}
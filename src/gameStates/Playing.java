@@ -1,20 +1,28 @@
 package gameStates;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import entities.EnemyManager;
 import entities.Player;
+import inputs.InputRecord;
+import inputs.InputRecording;
 import levels.LevelManager;
 import main.Game;
 import ui.GameOverOverlay;
 import ui.LevelCompletedOverlay;
 import ui.PausedOverlay;
 import utilz.LoadSave;
+import utilz.Profiler;
 
 public class Playing extends State implements StateMethods{
 	
@@ -26,6 +34,7 @@ public class Playing extends State implements StateMethods{
 	
 	//screen movement variables
 	private int xLvlOffset;
+	private int prevXLvlOffset; // camera at the start of the current update, for interpolation
 	private int leftBorder = (int)(0.5 * Game.GAME_WIDTH);
 	private int rightBorder = (int)(0.6 * Game.GAME_WIDTH);
 	private int maxLvlOffsetX;
@@ -37,6 +46,16 @@ public class Playing extends State implements StateMethods{
 	private Boolean lvlCompleted = false;
 	
 	private boolean playerDying = false;
+	
+	// latest finished frame for the EDT, swapped in whole by the game thread
+	private final AtomicReference<RenderSnapshot> renderSnapshot = new AtomicReference<>();
+	
+	// input arrives on the EDT and waits here for the next update
+	private final ConcurrentLinkedQueue<InputRecord> pendingInputs = new ConcurrentLinkedQueue<>();
+	private static final Component INPUT_SOURCE = new Component() {};
+	private long tick = 0; // number of updates so far, inputs are stamped with it
+	private InputRecording recording;
+	private InputRecording replay;
 
 	
 	private BufferedImage mainBackground, parallax_1, parallax_2, parallax_3; // background images
@@ -53,6 +72,7 @@ public class Playing extends State implements StateMethods{
 		
 		calcLvlOffset();
 		loadStartLevel();
+		publishSnapshot();
 	}
 	
 	public void loadNextLevel() {
@@ -73,7 +93,7 @@ public class Playing extends State implements StateMethods{
 	    enemyManager = new EnemyManager(this);
 	    
 	    player = new Player(0, 0, (int)(256 * Game.SCALE), (int)(256 * Game.SCALE), this);
-	    player.loadLvlData(levelManager.getCurrentLevel().getLvlData());
+	    player.loadCollisionMap(levelManager.getCurrentLevel().getCollisionMap());
 	    pausedOverlay = new PausedOverlay(this);
 	    gameOverOverlay = new GameOverOverlay(this);
 	    levelCompletedOverlay = new LevelCompletedOverlay(this);
@@ -82,6 +102,10 @@ public class Playing extends State implements StateMethods{
 
 	@Override
 	public void update() {
+	    long updateStart = Profiler.Begin();
+	    processInputs();
+	    prevXLvlOffset = xLvlOffset;
+	    
 	    if (paused) {
 	        pausedOverlay.update();
 	    } else if (lvlCompleted) {
@@ -89,14 +113,28 @@ public class Playing extends State implements StateMethods{
 	    } else if (gameOver) {
 	        gameOverOverlay.update();
 	    } else if (playerDying) {
-	        player.update();
+	        updatePlayer();
 	    } else {
 	        levelManager.update();
-	        player.update();
-	        enemyManager.update(levelManager.getCurrentLevel().getLvlData(), player, levelManager);
+	        updatePlayer();
+	        
+	        long start = Profiler.Begin();
+	        enemyManager.update(levelManager.getCurrentLevel().getCollisionMap(), player, levelManager, xLvlOffset);
+	        Profiler.End(Profiler.ENEMY_UPDATE, start);
 	        
 	        checkCloseToBorder();
 	    }
+	    
+	    publishSnapshot();
+	    tick++;
+	    Profiler.Flush(Profiler.COLLISION);
+	    Profiler.End(Profiler.UPDATE, updateStart);
+	}
+	
+	private void updatePlayer() {
+		long start = Profiler.Begin();
+		player.update();
+		Profiler.End(Profiler.PLAYER_UPDATE, start);
 	}
 
 
@@ -132,10 +170,19 @@ public class Playing extends State implements StateMethods{
 
 	@Override
     public void draw(Graphics g) {
+        // One atomic read: everything below comes from the same finished update
+        long drawStart = Profiler.Begin();
+        RenderSnapshot snapshot = renderSnapshot.get();
+        
+        // Blend between the last two updates so motion stays smooth when FPS and UPS differ
+        float alpha = snapshot.isFrozen() ? 1f : game.getInterpolation();
+        int xLvlOffset = snapshot.getDrawLvlOffset(alpha);
+        
         // Draw background
+        long start = Profiler.Begin();
         g.drawImage(mainBackground, 0, 0, Game.GAME_WIDTH, Game.GAME_HEIGHT, null);
         // Draw parallax layers
-        int levelWidth = levelManager.getCurrentLevel().getLvlData()[0].length * Game.TILES_SIZE;
+        int levelWidth = levelManager.getLevel(snapshot.lvlIndex).getLvlData()[0].length * Game.TILES_SIZE;
         int parallax1Offset = (int) (xLvlOffset * 0.1);
         int parallax2Offset = (int) (xLvlOffset * 0.3);
         int parallax3Offset = (int) (xLvlOffset * 0.7);
@@ -143,35 +190,140 @@ public class Playing extends State implements StateMethods{
         g.drawImage(parallax_1, -parallax1Offset, 0, levelWidth, Game.GAME_HEIGHT, null);
         g.drawImage(parallax_2, -parallax2Offset, 0, levelWidth, Game.GAME_HEIGHT, null);
         g.drawImage(parallax_3, -parallax3Offset, 0, levelWidth, Game.GAME_HEIGHT, null);
+        start = Profiler.End(Profiler.PARALLAX, start);
 
         // Draw game elements
-        levelManager.draw(g, xLvlOffset);
-        player.render(g, xLvlOffset);
-        enemyManager.draw(g, xLvlOffset);
+        levelManager.draw(g, snapshot.lvlIndex, xLvlOffset);
+        start = Profiler.End(Profiler.LEVEL_DRAW, start);
+        player.render(g, snapshot, xLvlOffset, alpha);
+        start = Profiler.End(Profiler.PLAYER_DRAW, start);
+        enemyManager.draw(g, snapshot.enemies, xLvlOffset, alpha);
+        start = Profiler.End(Profiler.ENEMY_DRAW, start);
         
         // Draw overlays
-        if (paused) {
+        if (snapshot.paused) {
             pausedOverlay.draw(g);
-        } else if (gameOver) {
+        } else if (snapshot.gameOver) {
             gameOverOverlay.draw(g);
-        } else if (lvlCompleted) {
+        } else if (snapshot.lvlCompleted) {
             levelCompletedOverlay.draw(g);
         }
+        Profiler.End(Profiler.OVERLAY_DRAW, start);
+        Profiler.End(Profiler.DRAW, drawStart);
+        
+        if (Profiler.IsOverlayVisible())
+        	Profiler.DrawOverlay(g);
         
         //tile debug
 //        drawGrid(g, xLvlOffset);
     }
 	
+	// Called by the game thread once an update is finished. The EDT picks it up in draw().
+	private void publishSnapshot() {
+		renderSnapshot.set(new RenderSnapshot(levelManager.getLvl(), prevXLvlOffset, xLvlOffset,
+				player.getRenderSprite(), enemyManager.getRenderSprites(),
+				player.getHealthWidth(), player.getEnergyWidth(),
+				paused, gameOver, lvlCompleted, playerDying));
+	}
+	
 	
+	// Input from the EDT is only queued here. It is applied at the start of the next update,
+	// so every input lands on a known tick, which is what makes recordings replay exactly.
 	@Override
 	public void mouseClicked(MouseEvent e) {
-		if (e.getButton() == MouseEvent.BUTTON1)
-			player.setAttacking(true);
-		
+		queueInput(InputRecord.Mouse(InputRecord.MOUSE_CLICKED, e.getButton(), e.getX(), e.getY()));
+	}
+
+	@Override
+	public void mousePressed(MouseEvent e) {
+		queueInput(InputRecord.Mouse(InputRecord.MOUSE_PRESSED, e.getButton(), e.getX(), e.getY()));
+	}
+
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		queueInput(InputRecord.Mouse(InputRecord.MOUSE_RELEASED, e.getButton(), e.getX(), e.getY()));
+	}
+
+	@Override
+	public void mouseMoved(MouseEvent e) {
+		queueInput(InputRecord.Mouse(InputRecord.MOUSE_MOVED, e.getButton(), e.getX(), e.getY()));
+	}
+	
+	public void mouseDragged(MouseEvent e) {
+		queueInput(InputRecord.Mouse(InputRecord.MOUSE_DRAGGED, e.getButton(), e.getX(), e.getY()));
 	}
 
 	@Override
-    public void mousePressed(MouseEvent e) {
+	public void keyPressed(KeyEvent e) {
+		// debug overlay, not part of the game so it skips the queue and the recording
+		if (e.getKeyCode() == KeyEvent.VK_F3) {
+			Profiler.ToggleOverlay();
+			return;
+		}
+		queueInput(InputRecord.Key(InputRecord.KEY_PRESSED, e.getKeyCode()));
+	}
+
+	@Override
+	public void keyReleased(KeyEvent e) {
+		queueInput(InputRecord.Key(InputRecord.KEY_RELEASED, e.getKeyCode()));
+	}
+	
+	public void windowFocusLost() {
+		queueInput(InputRecord.Key(InputRecord.FOCUS_LOST, 0));
+	}
+	
+	// safe to call from any thread (EDT, headless scripts)
+	public void queueInput(InputRecord input) {
+		pendingInputs.add(input);
+	}
+	
+	private void processInputs() {
+		if (replay != null) {
+			// live input is ignored while a replay is running
+			pendingInputs.clear();
+			InputRecord input;
+			while ((input = replay.next(tick)) != null)
+				applyInput(input);
+			
+			if (replay.isFinished(tick)) {
+				System.out.println("Replay finished at tick " + tick);
+				replay = null;
+			}
+			return;
+		}
+		
+		InputRecord input;
+		while ((input = pendingInputs.poll()) != null) {
+			if (recording != null)
+				recording.record(tick, input);
+			applyInput(input);
+		}
+	}
+	
+	private void applyInput(InputRecord input) {
+		switch (input.type) {
+		case InputRecord.KEY_PRESSED -> handleKeyPressed(input.code);
+		case InputRecord.KEY_RELEASED -> handleKeyReleased(input.code);
+		case InputRecord.MOUSE_CLICKED -> handleMouseClicked(input.code);
+		case InputRecord.MOUSE_PRESSED -> handleMousePressed(ToMouseEvent(input, MouseEvent.MOUSE_PRESSED));
+		case InputRecord.MOUSE_RELEASED -> handleMouseReleased(ToMouseEvent(input, MouseEvent.MOUSE_RELEASED));
+		case InputRecord.MOUSE_MOVED -> handleMouseMoved(ToMouseEvent(input, MouseEvent.MOUSE_MOVED));
+		case InputRecord.MOUSE_DRAGGED -> handleMouseDragged(ToMouseEvent(input, MouseEvent.MOUSE_DRAGGED));
+		case InputRecord.FOCUS_LOST -> player.resetDirBooleans();
+		}
+	}
+	
+	// the overlays only look at x, y and the button, so any component will do as the source
+	private static MouseEvent ToMouseEvent(InputRecord input, int id) {
+		return new MouseEvent(INPUT_SOURCE, id, 0, 0, input.x, input.y, 1, false, input.code);
+	}
+	
+	private void handleMouseClicked(int button) {
+		if (button == MouseEvent.BUTTON1)
+			player.setAttacking(true);
+	}
+
+    private void handleMousePressed(MouseEvent e) {
         if (gameOver) {
             gameOverOverlay.mousePressed(e);
         } else if (!gameOver && !playerDying) {
@@ -182,8 +334,7 @@ public class Playing extends State implements StateMethods{
         }
     }
 
-    @Override
-    public void mouseReleased(MouseEvent e) {
+    private void handleMouseReleased(MouseEvent e) {
         if (gameOver) {
             gameOverOverlay.mouseReleased(e);
         } else if (!gameOver && !playerDying) {
@@ -194,8 +345,7 @@ public class Playing extends State implements StateMethods{
         }
     }
 
-    @Override
-    public void mouseMoved(MouseEvent e) {
+    private void handleMouseMoved(MouseEvent e) {
         if (gameOver) {
             gameOverOverlay.mouseMoved(e);
         } else if (!gameOver && !playerDying) {
@@ -206,20 +356,17 @@ public class Playing extends State implements StateMethods{
         }
     }
 	
-	public void mouseDragged(MouseEvent e) {
+	private void handleMouseDragged(MouseEvent e) {
 		if (!gameOver)
 			if (paused)
 				pausedOverlay.mouseDragged(e);
 	}
 
-
-
-	@Override
-	public void keyPressed(KeyEvent e) {
+	private void handleKeyPressed(int keyCode) {
 	    if (gameOver) {
-	        gameOverOverlay.keyPressed(e);
+	        gameOverOverlay.keyPressed(keyCode);
 	    } else if (!paused) {
-	        switch (e.getKeyCode()) {
+	        switch (keyCode) {
 	        case KeyEvent.VK_A:
 	            player.setLeft(true);
 	            break;
@@ -237,17 +384,16 @@ public class Playing extends State implements StateMethods{
 	            break;
 	        }
 	    } else {
-	        switch (e.getKeyCode()) {
+	        switch (keyCode) {
 	        case KeyEvent.VK_ESCAPE:
 	            paused = !paused;
 	            break;
 	        }
 	    }
 	}
-
-	@Override
-	public void keyReleased(KeyEvent e) {
-		switch (e.getKeyCode()) {
+	
+	private void handleKeyReleased(int keyCode) {
+		switch (keyCode) {
 		case KeyEvent.VK_A:
 			player.setLeft(false);
 			break;
@@ -261,18 +407,51 @@ public class Playing extends State implements StateMethods{
 		
 	}
 	
+	// Starts recording every applied input, the file is written when the game exits
+	public void startRecording(Path path) {
+		recording = new InputRecording(levelManager.getLvl());
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				recording.setEndTick(tick);
+				recording.save(path);
+				System.out.println("Saved " + recording.size() + " inputs over " + tick + " ticks to " + path);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}));
+	}
+	
+	// Plays back a recording instead of live input. Must start on the same level the recording did.
+	public void startReplay(InputRecording replay) {
+		if (replay.getStartLevel() != levelManager.getLvl())
+			System.err.println("Replay starts on level " + (replay.getStartLevel() + 1) + " but the game is on level " + (levelManager.getLvl() + 1));
+		this.replay = replay;
+	}
+	
+	public long getTick() {
+		return tick;
+	}
+	
 	public void unpauseGame() {
 		paused = false;
 	}
 	
-	public void windowFocusLost() {
-		player.resetDirBooleans();
-	}
-
 	public Player getPlayer() {
 		return player;
 	}
 	
+	public boolean isGameOver() {
+		return gameOver;
+	}
+	
+	public boolean isLevelCompleted() {
+		return lvlCompleted;
+	}
+	
+	public LevelManager getLevelManager() {
+		return levelManager;
+	}
+	
 	public void setGameOver(boolean gameOver) {
 	    this.gameOver = gameOver;
 	}
@@ -287,7 +466,7 @@ public class Playing extends State implements StateMethods{
         // Reset player
         player.resetDirBooleans();
         player.resetPosition();
-        player.loadLvlData(levelManager.getCurrentLevel().getLvlData());
+        player.loadCollisionMap(levelManager.getCurrentLevel().getCollisionMap());
         player.changeHealth(100); // Reset health to full
         
         // Reset enemies
@@ -295,6 +474,7 @@ public class Playing extends State implements StateMethods{
         
         // Reset level offset if needed
         xLvlOffset = 0;
+        prevXLvlOffset = 0;
     }
 
 	public void checkEnemyHit(Rectangle2D.Float attackBox, int damage) {
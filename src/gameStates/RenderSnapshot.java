@@ -0,0 +1,76 @@
+package gameStates;
+
+// Everything Playing.draw needs for one frame, copied out at the end of an update.
+// The game thread builds a new one every update and publishes it with a single reference write,
+// so the EDT never reads Player/EnemyManager fields while they are half way through an update.
+// Nothing in here is ever changed after it is built.
+public class RenderSnapshot {
+
+	// one drawable entity: which sheet, which frame, where and which way it faces
+	public static class Sprite {
+		public final int spriteId; // enemy type constant, or PLAYER_SPRITE
+		public final int state, aniIndex;
+		public final float prevX, prevY; // hitbox at the start of the update
+		public final float x, y; // hitbox at the end of the update
+		public final int flipX, flipW;
+		public final boolean visible;
+
+		public Sprite(int spriteId, int state, int aniIndex, float prevX, float prevY, float x, float y, int flipX, int flipW, boolean visible) {
+			this.spriteId = spriteId;
+			this.state = state;
+			this.aniIndex = aniIndex;
+			this.prevX = prevX;
+			this.prevY = prevY;
+			this.x = x;
+			this.y = y;
+			this.flipX = flipX;
+			this.flipW = flipW;
+			this.visible = visible;
+		}
+
+		public float getDrawX(float alpha) {
+			return prevX + (x - prevX) * alpha;
+		}
+
+		public float getDrawY(float alpha) {
+			return prevY + (y - prevY) * alpha;
+		}
+	}
+
+	public static final int PLAYER_SPRITE = 0;
+
+	public final int lvlIndex;
+	public final int prevXLvlOffset, xLvlOffset;
+	public final Sprite player;
+	public final Sprite[] enemies;
+
+	// HUD
+	public final int healthWidth, energyWidth;
+
+	// which overlay is up
+	public final boolean paused, gameOver, lvlCompleted, playerDying;
+
+	public RenderSnapshot(int lvlIndex, int prevXLvlOffset, int xLvlOffset, Sprite player, Sprite[] enemies, int healthWidth, int energyWidth,
+			boolean paused, boolean gameOver, boolean lvlCompleted, boolean playerDying) {
+		this.lvlIndex = lvlIndex;
+		this.prevXLvlOffset = prevXLvlOffset;
+		this.xLvlOffset = xLvlOffset;
+		this.player = player;
+		this.enemies = enemies;
+		this.healthWidth = healthWidth;
+		this.energyWidth = energyWidth;
+		this.paused = paused;
+		this.gameOver = gameOver;
+		this.lvlCompleted = lvlCompleted;
+		this.playerDying = playerDying;
+	}
+
+	// world is frozen on these screens, so there is nothing to blend
+	public boolean isFrozen() {
+		return paused || gameOver || lvlCompleted || playerDying;
+	}
+
+	public int getDrawLvlOffset(float alpha) {
+		return (int) (prevXLvlOffset + (xLvlOffset - prevXLvlOffset) * alpha);
+	}
+}
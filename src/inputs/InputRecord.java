@@ -0,0 +1,38 @@
+package inputs;
+
+// One input that was forwarded to Playing. Playing queues these as they come in from the EDT
+// and applies them at the start of the next update, so every input lands on a known tick.
+public class InputRecord {
+
+	public static final byte KEY_PRESSED = 1;
+	public static final byte KEY_RELEASED = 2;
+	public static final byte MOUSE_CLICKED = 3;
+	public static final byte MOUSE_PRESSED = 4;
+	public static final byte MOUSE_RELEASED = 5;
+	public static final byte MOUSE_MOVED = 6;
+	public static final byte MOUSE_DRAGGED = 7;
+	public static final byte FOCUS_LOST = 8;
+
+	public final byte type;
+	public final int code; // key code, or mouse button
+	public final int x, y; // mouse position, 0 for keys
+
+	public InputRecord(byte type, int code, int x, int y) {
+		this.type = type;
+		this.code = code;
+		this.x = x;
+		this.y = y;
+	}
+
+	public static InputRecord Key(byte type, int keyCode) {
+		return new InputRecord(type, keyCode, 0, 0);
+	}
+
+	public static InputRecord Mouse(byte type, int button, int x, int y) {
+		return new InputRecord(type, button, x, y);
+	}
+
+	public boolean isMouse() {
+		return type >= MOUSE_CLICKED && type <= MOUSE_DRAGGED;
+	}
+}
@@ -0,0 +1,163 @@
+package inputs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import main.Game;
+
+// Every input Playing applied, stamped with the tick it was applied on.
+// Recorded during play, saved as a small binary file and replayed tick for tick.
+//
+// File layout (big endian):
+//   int   magic "ASRP"
+//   byte  version
+//   short updates per second the recording was made at
+//   int   level index the recording started on
+//   then per input: varint tick delta, byte type, varint code, and for mouse inputs zigzag varint x, y
+//   ends with: varint tick delta to the last recorded tick, byte 0
+public class InputRecording {
+
+	private static final int MAGIC = 0x41535250; // "ASRP"
+	private static final byte VERSION = 1;
+	private static final byte END = 0;
+
+	private int startLevel;
+	private ArrayList<Long> ticks = new ArrayList<>();
+	private ArrayList<InputRecord> records = new ArrayList<>();
+	private long endTick;
+
+	// replay cursor
+	private int next = 0;
+
+	public InputRecording(int startLevel) {
+		this.startLevel = startLevel;
+	}
+
+	public synchronized void record(long tick, InputRecord record) {
+		ticks.add(tick);
+		records.add(record);
+	}
+
+	// remembers how long the recording ran, so a replay doesn't stop at the last keypress
+	public void setEndTick(long endTick) {
+		this.endTick = endTick;
+	}
+
+	// Next input for this tick, or null once everything for this tick has been handed out
+	public InputRecord next(long tick) {
+		if (next < records.size() && ticks.get(next) <= tick)
+			return records.get(next++);
+		return null;
+	}
+
+	public boolean isFinished(long tick) {
+		return next >= records.size() && tick > endTick;
+	}
+
+	public int getStartLevel() {
+		return startLevel;
+	}
+
+	public synchronized int size() {
+		return records.size();
+	}
+
+	// synchronized with record() because the save runs from a shutdown hook while the game thread may still be updating
+	public synchronized void save(Path path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeShort(Game.UPS_SET);
+			out.writeInt(startLevel);
+
+			long lastTick = 0;
+			for (int i = 0; i < records.size(); i++) {
+				InputRecord r = records.get(i);
+				WriteVarLong(out, ticks.get(i) - lastTick);
+				lastTick = ticks.get(i);
+
+				out.writeByte(r.type);
+				WriteVarLong(out, r.code);
+				if (r.isMouse()) {
+					WriteVarLong(out, ZigZag(r.x));
+					WriteVarLong(out, ZigZag(r.y));
+				}
+			}
+
+			WriteVarLong(out, Math.max(0, endTick - lastTick));
+			out.writeByte(END);
+		}
+	}
+
+	public static InputRecording load(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not an input recording: " + path);
+			byte version = in.readByte();
+			if (version != VERSION)
+				throw new IOException("Unsupported recording version " + version);
+			int ups = in.readShort();
+			if (ups != Game.UPS_SET)
+				System.err.println("Recording was made at " + ups + " UPS, game runs at " + Game.UPS_SET + ", replay will drift");
+
+			InputRecording recording = new InputRecording(in.readInt());
+			long tick = 0;
+			while (true) {
+				tick += ReadVarLong(in);
+				byte type = in.readByte();
+				if (type == END)
+					break;
+
+				int code = (int) ReadVarLong(in);
+				if (type >= InputRecord.MOUSE_CLICKED && type <= InputRecord.MOUSE_DRAGGED) {
+					int x = UnZigZag(ReadVarLong(in));
+					int y = UnZigZag(ReadVarLong(in));
+					recording.record(tick, InputRecord.Mouse(type, code, x, y));
+				} else {
+					recording.record(tick, InputRecord.Key(type, code));
+				}
+			}
+			recording.setEndTick(tick);
+			return recording;
+		} catch (EOFException e) {
+			throw new IOException("Recording is truncated: " + path, e);
+		}
+	}
+
+	private static void WriteVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long ReadVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+			shift += 7;
+		}
+	}
+
+	// mouse coordinates can go negative while dragging outside the window
+	private static long ZigZag(int value) {
+		return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+	}
+
+	private static int UnZigZag(long value) {
+		int n = (int) value;
+		return (n >>> 1) ^ -(n & 1);
+	}
+}
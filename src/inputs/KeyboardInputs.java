@@ -4,14 +4,14 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
 import gameStates.Gamestate;
-import main.GamePanel;
+import main.Game;
 
 public class KeyboardInputs implements KeyListener {
 
-	private GamePanel gamePanel;
+	private Game game;
 
-	public KeyboardInputs(GamePanel gamePanel) {
-		this.gamePanel = gamePanel;
+	public KeyboardInputs(Game game) {
+		this.game = game;
 	}
 
 	@Override
@@ -23,10 +23,10 @@ public class KeyboardInputs implements KeyListener {
 	public void keyReleased(KeyEvent e) {
 		switch(Gamestate.state) {
 		case MENU:
-			gamePanel.getGame().getMenu().keyReleased(e);
+			game.getMenu().keyReleased(e);
 			break;
 		case PLAYING:
-			gamePanel.getGame().getPlaying().keyReleased(e);
+			game.getPlaying().keyReleased(e);
 			break;
 		default:
 			break;
@@ -38,13 +38,13 @@ public class KeyboardInputs implements KeyListener {
 	public void keyPressed(KeyEvent e) {
 		switch(Gamestate.state) {
 		case MENU:
-			gamePanel.getGame().getMenu().keyPressed(e);
+			game.getMenu().keyPressed(e);
 			break;
 		case PLAYING:
-			gamePanel.getGame().getPlaying().keyPressed(e);
+			game.getPlaying().keyPressed(e);
 			break;
 		case OPTIONS:
-			gamePanel.getGame().getGameOptions().keyPressed(e);
+			game.getGameOptions().keyPressed(e);
 			break;
 		default:
 			break;
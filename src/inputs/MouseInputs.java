@@ -5,21 +5,21 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 
 import gameStates.Gamestate;
-import main.GamePanel;
+import main.Game;
 
 public class MouseInputs implements MouseMotionListener, MouseListener{
 	
-	private GamePanel gamePanel;
+	private Game game;
 	
-	public MouseInputs(GamePanel gamePanel) {
-		this.gamePanel = gamePanel;
+	public MouseInputs(Game game) {
+		this.game = game;
 	}
 	
 	@Override
 	public void mouseClicked(MouseEvent e) {
 		switch(Gamestate.state) {
 		case PLAYING:
-			gamePanel.getGame().getPlaying().mouseClicked(e);
+			game.getPlaying().mouseClicked(e);
 			break;
 		default:
 			break;
@@ -31,13 +31,13 @@ public class MouseInputs implements MouseMotionListener, MouseListener{
 	public void mouseMoved(MouseEvent e) {
 		switch(Gamestate.state) {
 		case MENU:
-			gamePanel.getGame().getMenu().mouseMoved(e);;
+			game.getMenu().mouseMoved(e);;
 			break;
 		case PLAYING:
-			gamePanel.getGame().getPlaying().mouseMoved(e);;
+			game.getPlaying().mouseMoved(e);;
 			break;
 		case OPTIONS:
-			gamePanel.getGame().getGameOptions().mouseMoved(e);
+			game.getGameOptions().mouseMoved(e);
 			break;
 		default:
 			break;
@@ -49,13 +49,13 @@ public class MouseInputs implements MouseMotionListener, MouseListener{
 	public void mousePressed(MouseEvent e) {
 		switch(Gamestate.state) {
 		case MENU:
-			gamePanel.getGame().getMenu().mousePressed(e);;
+			game.getMenu().mousePressed(e);;
 			break;
 		case PLAYING:
-			gamePanel.getGame().getPlaying().mousePressed(e);;
+			game.getPlaying().mousePressed(e);;
 			break;
 		case OPTIONS:
-			gamePanel.getGame().getGameOptions().mousePressed(e);
+			game.getGameOptions().mousePressed(e);
 			break;
 		default:
 			break;
@@ -67,13 +67,13 @@ public class MouseInputs implements MouseMotionListener, MouseListener{
 	public void mouseReleased(MouseEvent e) {
 		switch(Gamestate.state) {
 		case MENU:
-			gamePanel.getGame().getMenu().mouseReleased(e);;
+			game.getMenu().mouseReleased(e);;
 			break;
 		case PLAYING:
-			gamePanel.getGame().getPlaying().mouseReleased(e);;
+			game.getPlaying().mouseReleased(e);;
 			break;
 		case OPTIONS:
-			gamePanel.getGame().getGameOptions().mouseReleased(e);
+			game.getGameOptions().mouseReleased(e);
 			break;
 		default:
 			break;
@@ -97,10 +97,10 @@ public class MouseInputs implements MouseMotionListener, MouseListener{
 	public void mouseDragged(MouseEvent e) {
 		switch (Gamestate.state) {
 		case PLAYING:
-			gamePanel.getGame().getPlaying().mouseDragged(e);
+			game.getPlaying().mouseDragged(e);
 			break;
 		case OPTIONS:
-			gamePanel.getGame().getGameOptions().mouseDragged(e);
+			game.getGameOptions().mouseDragged(e);
 			break;
 		default:
 			break;
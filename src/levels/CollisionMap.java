@@ -0,0 +1,279 @@
+package levels;
+
+import main.Game;
+
+// Which tiles of a level are solid, one bit per tile and 64 columns per long. A whole 14 row level
+// section fits in a few cache lines, where int[][] lvlData costs a row pointer and 4 bytes per tile.
+//
+// Tile coordinates outside the level count as solid. The pixel queries keep the rules the old
+// HelpMethods.IsSolid had: left or right of the level and below the screen are solid, above the
+// screen is open. Moving boxes go through sweep, which gives the time and side of the first contact.
+//
+// Enemy sight lines ask whether a run of tiles in one row can be walked along. Every row keeps a
+// running count of the tiles that can't, so that is two array reads whatever the distance.
+public class CollisionMap {
+
+	private final long[][] rows;
+	private final int width, height; // in tiles
+	private final float pixelWidth;
+	// unwalkableBefore[y][x]: how many of the tiles 0 to x - 1 in row y are solid or have nothing solid under them
+	private final int[][] unwalkableBefore;
+
+	public CollisionMap(long[][] rows, int width) {
+		this.rows = rows;
+		this.width = width;
+		this.height = rows.length;
+		this.pixelWidth = width * Game.TILES_SIZE;
+		unwalkableBefore = new int[height][width + 1];
+		for (int y = 0; y < height; y++)
+			countUnwalkable(y);
+	}
+
+	public boolean isSolidTile(int xTile, int yTile) {
+		if (xTile < 0 || xTile >= width || yTile < 0 || yTile >= height)
+			return true;
+		return (rows[yTile][xTile >> 6] & (1L << xTile)) != 0; // the shift only uses the low 6 bits
+	}
+
+	public boolean isSolid(float x, float y) {
+		if (x < 0 || x >= pixelWidth)
+			return true;
+		if (y >= Game.GAME_HEIGHT)
+			return true;
+		if (y < 0)
+			return false;
+
+		// float division kept on purpose, 72 px tiles aren't a power of two and this rounds exactly like before
+		int xIndex = (int) (x / Game.TILES_SIZE);
+		int yIndex = (int) (y / Game.TILES_SIZE);
+		return (rows[yIndex][xIndex >> 6] & (1L << xIndex)) != 0;
+	}
+
+	// True when no solid tile touches the box. Every tile under the box is checked, a row at a time
+	// with word masks, so thin walls between the old 8 sample points can't slip through.
+	// A pixel on a tile line belongs to the tile after it, so a right or bottom edge lying exactly on
+	// a line touches the next tile, a left or top edge on a line doesn't touch the one before.
+	public boolean canMoveHere(float x, float y, float width, float height) {
+		if (x < 0 || x + width >= pixelWidth)
+			return false;
+		if (y + height >= Game.GAME_HEIGHT)
+			return false;
+		if (y + height < 0)
+			return true;
+
+		int firstCol = (int) (x / Game.TILES_SIZE), lastCol = Math.min(this.width - 1, (int) ((x + width) / Game.TILES_SIZE));
+		int firstRow = y < 0 ? 0 : (int) (y / Game.TILES_SIZE), lastRow = (int) ((y + height) / Game.TILES_SIZE);
+		for (int row = firstRow; row <= lastRow; row++)
+			if (AnySolid(rows[row], firstCol, lastCol))
+				return false;
+		return true;
+	}
+
+	// any bit set from firstCol to lastCol, inclusive
+	private static boolean AnySolid(long[] row, int firstCol, int lastCol) {
+		int firstWord = firstCol >> 6, lastWord = lastCol >> 6;
+		long firstMask = -1L << firstCol; // shifts only use the low 6 bits
+		long lastMask = -1L >>> (63 - (lastCol & 63));
+		if (firstWord == lastWord)
+			return (row[firstWord] & firstMask & lastMask) != 0;
+		if ((row[firstWord] & firstMask) != 0 || (row[lastWord] & lastMask) != 0)
+			return true;
+		for (int w = firstWord + 1; w < lastWord; w++)
+			if (row[w] != 0)
+				return true;
+		return false;
+	}
+
+	// True when every tile from xStart up to (not including) xEnd in row y is open with a solid tile
+	// under it, or the range is empty. Same answer as checking them one by one with isSolidTile, so
+	// anything outside the level isn't walkable, except the bottom row stands on what's below the level.
+	public boolean isWalkable(int xStart, int xEnd, int y) {
+		if (xEnd <= xStart)
+			return true;
+		if (xStart < 0 || xEnd > width || y < 0 || y >= height)
+			return false;
+		return unwalkableBefore[y][xEnd] == unwalkableBefore[y][xStart];
+	}
+
+	private void countUnwalkable(int y) {
+		int[] counts = unwalkableBefore[y];
+		for (int x = 0; x < width; x++)
+			counts[x + 1] = counts[x] + (isSolidTile(x, y) || !isSolidTile(x, y + 1) ? 1 : 0);
+	}
+
+	// How far a box gets moving by dx, dy before it runs into something
+	public static class Hit {
+		public float time; // 0 to 1, the part of the move done before contact, 1 if nothing was hit
+		public int normalX, normalY; // which way the surface that was hit faces, both 0 if nothing was hit
+		public float x, y; // where the box ends up, just clear of what it hit
+	}
+
+	// gaps left between a resolved box and what it hit, same as the old snapping: walls 0.1 px, floors 1 px,
+	// ceilings none (a top edge on a tile boundary is already outside the tile above)
+	private static final float WALL_GAP = 0.1f;
+	private static final float FLOOR_GAP = 1f;
+
+	// Swept box against the tile grid. Every solid tile the box could pass through is considered,
+	// the earliest contact wins, so nothing is tunnelled through however fast the box moves. Tiles
+	// the box already overlaps when it starts don't stop it, it can always move out.
+	// Returns true if something was hit, hit says when, which side and where the box stops.
+	public boolean sweep(float x, float y, float width, float height, float dx, float dy, Hit hit) {
+		hit.time = 1;
+		hit.normalX = 0;
+		hit.normalY = 0;
+
+		// almost every move is along one axis, those only walk the tile lines the leading edge crosses
+		float contact; // the tile edge that was hit
+		if (dy == 0)
+			contact = dx == 0 ? 0 : sweepX(x, y, width, height, dx, hit);
+		else if (dx == 0)
+			contact = sweepY(x, y, width, height, dy, hit);
+		else if (canMoveHere(Math.min(x, x + dx), Math.min(y, y + dy), width + Math.abs(dx), height + Math.abs(dy)))
+			contact = 0; // nothing anywhere near the path
+		else
+			contact = sweepDiagonal(x, y, width, height, dx, dy, hit);
+
+		hit.x = x + dx * hit.time;
+		hit.y = y + dy * hit.time;
+		if (hit.normalX < 0)
+			hit.x = contact - width - WALL_GAP;
+		else if (hit.normalX > 0)
+			hit.x = contact + WALL_GAP;
+		else if (hit.normalY < 0)
+			hit.y = contact - height - FLOOR_GAP;
+		else if (hit.normalY > 0)
+			hit.y = contact;
+		return (hit.normalX | hit.normalY) != 0;
+	}
+
+	// Columns the leading edge crosses, nearest first. A column blocks if it is outside the level, the
+	// box reaches below the screen, or any of the rows the box spans is solid in it.
+	private float sweepX(float x, float y, float width, float height, float dx, Hit hit) {
+		int size = Game.TILES_SIZE;
+		int lastRow = (int) Math.floor((y + height) / size); // below 0 when it is all above the screen, then only the sides block
+		int firstRow = y < 0 ? 0 : (int) (y / size);
+		boolean below = lastRow >= this.height;
+		lastRow = Math.min(lastRow, this.height - 1);
+
+		int col = dx > 0 ? (int) Math.ceil((x + width) / size) : (int) Math.floor(x / size) - 1;
+		int step = dx > 0 ? 1 : -1;
+		for (;; col += step) {
+			float edge = dx > 0 ? col * size : (col + 1) * size;
+			float entry = dx > 0 ? (edge - (x + width)) / dx : (edge - x) / dx;
+			if (entry < 0)
+				continue; // rounding put us on a line the box is already past
+			if (entry > 1 || (entry == 1 && dx < 0))
+				return 0; // ending with the left edge on the line isn't touching, see canMoveHere
+			if (below || col < 0 || col >= this.width || isColumnSolid(col, firstRow, lastRow)) {
+				hit.time = entry;
+				hit.normalX = -step;
+				return edge;
+			}
+		}
+	}
+
+	// Rows the leading edge crosses, nearest first. Same rules turned around: outside the level left
+	// or right blocks every row, below the screen blocks, above it is open.
+	private float sweepY(float x, float y, float width, float height, float dy, Hit hit) {
+		int size = Game.TILES_SIZE;
+		int firstCol = (int) Math.floor(x / size), lastCol = (int) Math.floor((x + width) / size);
+		boolean outside = firstCol < 0 || lastCol >= this.width;
+		firstCol = Math.max(firstCol, 0);
+		lastCol = Math.min(lastCol, this.width - 1);
+
+		int row = dy > 0 ? (int) Math.ceil((y + height) / size) : (int) Math.floor(y / size) - 1;
+		int step = dy > 0 ? 1 : -1;
+		for (;; row += step) {
+			if (row < 0 && dy < 0)
+				return 0;
+			float edge = dy > 0 ? row * size : (row + 1) * size;
+			float entry = dy > 0 ? (edge - (y + height)) / dy : (edge - y) / dy;
+			if (entry < 0)
+				continue;
+			if (entry > 1 || (entry == 1 && dy < 0))
+				return 0;
+			if (row >= this.height || (row >= 0 && (outside || AnySolid(rows[row], firstCol, lastCol)))) {
+				hit.time = entry;
+				hit.normalY = -step;
+				return edge;
+			}
+		}
+	}
+
+	// any of the rows firstRow to lastRow solid in this column
+	private boolean isColumnSolid(int col, int firstRow, int lastRow) {
+		long bit = 1L << col;
+		for (int row = firstRow; row <= lastRow; row++)
+			if ((rows[row][col >> 6] & bit) != 0)
+				return true;
+		return false;
+	}
+
+	// Both axes at once (the slab method): each blocking tile in the swept area gives the time the
+	// box starts overlapping it on both axes, the smallest of those is the contact.
+	private float sweepDiagonal(float x, float y, float width, float height, float dx, float dy, Hit hit) {
+		int size = Game.TILES_SIZE;
+		int firstCol = (int) Math.floor(Math.min(x, x + dx) / size);
+		int lastCol = (int) Math.floor(Math.max(x + width, x + width + dx) / size);
+		int firstRow = (int) Math.floor(Math.min(y, y + dy) / size); // above the screen only the sides of the level block
+		int lastRow = (int) Math.floor(Math.max(y + height, y + height + dy) / size);
+
+		float contact = 0;
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int col = firstCol; col <= lastCol; col++) {
+				if (!isBlocking(col, row))
+					continue;
+				float left = col * size, right = left + size, top = row * size, bottom = top + size;
+
+				float entryX = dx > 0 ? (left - (x + width)) / dx : (right - x) / dx;
+				float exitX = dx > 0 ? (right - x) / dx : (left - (x + width)) / dx;
+				float entryY = dy > 0 ? (top - (y + height)) / dy : (bottom - y) / dy;
+				float exitY = dy > 0 ? (bottom - y) / dy : (top - (y + height)) / dy;
+
+				float entry = Math.max(entryX, entryY);
+				float exit = Math.min(exitX, exitY);
+				if (entry < 0 || entry >= exit || entry > hit.time || (entry == hit.time && (hit.normalX | hit.normalY) != 0))
+					continue;
+
+				hit.time = entry;
+				if (entryX > entryY) {
+					hit.normalX = dx > 0 ? -1 : 1;
+					hit.normalY = 0;
+					contact = dx > 0 ? left : right;
+				} else {
+					hit.normalX = 0;
+					hit.normalY = dy > 0 ? -1 : 1;
+					contact = dy > 0 ? top : bottom;
+				}
+			}
+		}
+		return contact;
+	}
+
+	// same rules as isSolid, in tiles: left, right and below the level block, above is open
+	private boolean isBlocking(int col, int row) {
+		if (col < 0 || col >= width || row >= height)
+			return true;
+		return row >= 0 && (rows[row][col >> 6] & (1L << col)) != 0;
+	}
+
+	void setSolid(int xTile, int yTile, boolean solid) {
+		if (solid)
+			rows[yTile][xTile >> 6] |= 1L << xTile;
+		else
+			rows[yTile][xTile >> 6] &= ~(1L << xTile);
+
+		// the tile's own row, and the row above it, which stands on it
+		countUnwalkable(yTile);
+		if (yTile > 0)
+			countUnwalkable(yTile - 1);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
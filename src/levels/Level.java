@@ -2,74 +2,104 @@ package levels;
 
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import static utilz.HelpMethods.GetLevelData;
-import static utilz.HelpMethods.GetSigbin;
-import static utilz.HelpMethods.GetTikbalang;
-import static utilz.HelpMethods.GetDuwende;
+import static utilz.HelpMethods.ParseLevel;
+import static utilz.Constants.EnemyConstants.*;
 
 import entities.Duwende;
+import entities.Enemy;
 import entities.Sigbin;
 import entities.Tikbalang;
 import main.Game;
 
 public class Level {
 	
-	private BufferedImage img;
-	private ArrayList<Sigbin> sigbins;
-	private ArrayList<Tikbalang> tikbalangs; // Add this line
-	private ArrayList<Duwende> duwendes;
+	private ArrayList<Enemy> enemies = new ArrayList<>(); // in spawn order
 	private int [][] lvlData;
+	private CollisionMap collision;
+	private WalkableSpans spans;
 	
 	private int lvlTilesWide;
 	private int maxTilesOffset;
 	private int maxLvlOffsetX;
+	
+	// bumped by every setTile, columnVersion says when each column last changed (TileChunk rebakes from it)
+	private int version = 0;
+	private int[] columnVersion;
 
 	
 	public Level(BufferedImage img) {
-		this.img = img;
-		createLevelData();
-		createEnemies();
-		calculateLevelOffsets();
+		this(ParseLevel(img));
+	}
+	
+	public Level(LevelLayout layout) {
+		createLevelData(layout);
+		createEnemies(layout);
+		calculateLevelOffsets(layout);
 	}
 	
-	private void calculateLevelOffsets() {
-	    lvlTilesWide = img.getWidth();
+	private void calculateLevelOffsets(LevelLayout layout) {
+	    lvlTilesWide = layout.width;
 	    maxTilesOffset = lvlTilesWide - Game.TILES_IN_WIDTH;
-	    maxLvlOffsetX = Game.TILES_SIZE * maxTilesOffset;  
+	    maxLvlOffsetX = layout.getMaxLvlOffsetX(); // TILES_SIZE * maxTilesOffset, precomputed in .lvl files
 	}
 
-	private void createEnemies() {
-		sigbins = GetSigbin(img);
-		tikbalangs = GetTikbalang(img); // Add this line
-		duwendes = GetDuwende(img);
+	private void createEnemies(LevelLayout layout) {
+		for (int i = 0; i < layout.getSpawnCount(); i++) {
+			int x = layout.getSpawnX(i) * Game.TILES_SIZE;
+			int y = layout.getSpawnY(i) * Game.TILES_SIZE;
+			switch (layout.getSpawnType(i)) {
+			case SIGBIN -> enemies.add(new Sigbin(x, y));
+			case TIKBALANG -> enemies.add(new Tikbalang(x, y));
+			case DUWENDE -> enemies.add(new Duwende(x, y));
+			}
+		}
 	}
 
-	private void createLevelData() {
-		lvlData = GetLevelData(img);
+	private void createLevelData(LevelLayout layout) {
+		lvlData = layout.lvlData;
+		collision = new CollisionMap(layout.getSolidRows(), layout.width);
+		spans = new WalkableSpans(collision);
+		columnVersion = new int[lvlData[0].length];
 	}
 
 	public int getSpriteIndex(int x, int y) {
 		return lvlData[y][x]; 
 	}
 	
+	public void setTile(int x, int y, int spriteIndex) {
+		lvlData[y][x] = spriteIndex;
+		collision.setSolid(x, y, spriteIndex != 0);
+		spans.update(x, y);
+		version++;
+		columnVersion[x] = version;
+	}
+	
+	public int getVersion() {
+		return version;
+	}
+	
+	public int getColumnVersion(int x) {
+		return columnVersion[x];
+	}
+	
 	public int [][] getLvlData(){
 		return lvlData;
 	}
 	
-	public int getLvlOffset() {
-		return maxLvlOffsetX;
+	public CollisionMap getCollisionMap() {
+		return collision;
 	}
 	
-	public ArrayList<Sigbin> getSigbins(){
-		return sigbins;
+	// floor and open runs of every row, for enemy patrols
+	public WalkableSpans getWalkableSpans() {
+		return spans;
 	}
 	
-	// Add this method
-	public ArrayList<Tikbalang> getTikbalangs(){
-		return tikbalangs;
+	public int getLvlOffset() {
+		return maxLvlOffsetX;
 	}
 	
-	public ArrayList<Duwende> getDuwendes(){
-		return duwendes;
+	public ArrayList<Enemy> getEnemies(){
+		return enemies;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package levels;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.imageio.ImageIO;
+
+import utilz.HelpMethods;
+
+// Offline tool: turns every level PNG in a folder into a compiled .lvl next to it (or into another folder),
+// so the game can map the level instead of decoding the image on every launch.
+// Run it again after editing a level PNG, LoadSave falls back to the PNG when it no longer matches the
+// hash its .lvl was compiled from.
+//
+// Usage: java -Djava.awt.headless=true levels.LevelCompiler [png folder] [output folder]   (both default to res/lvls)
+public class LevelCompiler {
+
+	public static void main(String[] args) throws IOException {
+		File in = new File(args.length > 0 ? args[0] : "res/lvls");
+		File out = new File(args.length > 1 ? args[1] : in.getPath());
+		out.mkdirs();
+
+		File[] pngs = in.listFiles((dir, name) -> name.endsWith(".png"));
+		if (pngs == null || pngs.length == 0) {
+			System.err.println("No level PNGs in " + in);
+			return;
+		}
+
+		for (File png : pngs) {
+			byte[] bytes = Files.readAllBytes(png.toPath());
+			BufferedImage img = ImageIO.read(new ByteArrayInputStream(bytes));
+			LevelLayout layout = HelpMethods.ParseLevel(img);
+			Path target = Paths.get(out.getPath(), png.getName().replace(".png", LevelFile.EXTENSION));
+			LevelFile.Write(layout, ByteBuffer.wrap(bytes), target);
+			System.out.println(png.getName() + " -> " + target + " (" + layout.width + "x" + layout.height + " tiles, "
+					+ layout.getSpawnCount() + " spawns, " + target.toFile().length() + " bytes)");
+		}
+	}
+}
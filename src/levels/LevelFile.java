@@ -0,0 +1,160 @@
+package levels;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import main.Game;
+
+// The compiled level format written by LevelCompiler. Everything the game needs from a level PNG,
+// laid out so it can be memory mapped and read straight out of the mapping, no image decoding.
+//
+// The header keeps a hash of the PNG it was compiled from. A file that doesn't match its PNG any
+// more is refused, so an edited level never plays from a stale .lvl, whatever the file times say.
+//
+// Layout (big endian):
+//   header, 64 bytes:
+//     int   magic "ASLV"
+//     short version
+//     short TILES_SIZE the file was compiled with (maxLvlOffsetX depends on it)
+//     int   width, height in tiles
+//     int   maxLvlOffsetX, the furthest the camera may scroll
+//     int   spawn count
+//     int   longs per row of the solid bitset
+//     int   reserved
+//     32 bytes SHA-256 of the source PNG
+//   tiles:  width * height bytes, row by row, sprite index (0 is empty)
+//   spawns: per spawn byte enemy type, int tile x, int tile y, in image order
+//   solid:  height rows of bit words, bit i of a row is set when tile i is solid
+public class LevelFile {
+
+	public static final String EXTENSION = ".lvl";
+
+	private static final int MAGIC = 0x41534C56; // "ASLV"
+	private static final short VERSION = 2;
+	private static final int HEADER_SIZE = 64;
+	private static final int HASH_SIZE = 32;
+	private static final int SPAWN_SIZE = 9;
+
+	// png is the file the layout was parsed from
+	public static void Write(LevelLayout layout, ByteBuffer png, Path path) throws IOException {
+		long[][] solid = layout.getSolidRows();
+		int words = solid.length > 0 ? solid[0].length : 0;
+		int size = HEADER_SIZE + layout.width * layout.height + layout.getSpawnCount() * SPAWN_SIZE + layout.height * words * 8;
+
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		buf.putInt(MAGIC);
+		buf.putShort(VERSION);
+		buf.putShort((short) Game.TILES_SIZE);
+		buf.putInt(layout.width);
+		buf.putInt(layout.height);
+		buf.putInt(layout.getMaxLvlOffsetX());
+		buf.putInt(layout.getSpawnCount());
+		buf.putInt(words);
+		buf.putInt(0);
+		buf.put(SourceHash(png));
+
+		for (int j = 0; j < layout.height; j++)
+			for (int i = 0; i < layout.width; i++)
+				buf.put((byte) layout.lvlData[j][i]);
+
+		for (int s = 0; s < layout.getSpawnCount(); s++) {
+			buf.put((byte) layout.getSpawnType(s));
+			buf.putInt(layout.getSpawnX(s));
+			buf.putInt(layout.getSpawnY(s));
+		}
+
+		for (long[] row : solid)
+			for (long word : row)
+				buf.putLong(word);
+
+		Files.write(path, buf.array());
+	}
+
+	// Maps the file and reads the level out of the mapping
+	public static LevelLayout Load(Path path, ByteBuffer png) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return Read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path.toString(), png);
+		}
+	}
+
+	// Classpath resource: mapped when it is a plain file, read into memory when it sits inside a jar
+	public static LevelLayout Load(URL url, ByteBuffer png) throws IOException {
+		if ("file".equals(url.getProtocol())) {
+			try {
+				return Load(Paths.get(url.toURI()), png);
+			} catch (URISyntaxException e) {
+				throw new IOException(e);
+			}
+		}
+		try (InputStream is = url.openStream()) {
+			return Read(ByteBuffer.wrap(is.readAllBytes()), url.toString(), png);
+		}
+	}
+
+	// png is the level's PNG to check the file against, null when there is none to compare with
+	public static LevelLayout Read(ByteBuffer buf, String name, ByteBuffer png) throws IOException {
+		if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+			throw new IOException("Not a compiled level: " + name);
+		short version = buf.getShort();
+		if (version != VERSION)
+			throw new IOException("Unsupported level version " + version + ": " + name);
+		int tilesSize = buf.getShort();
+		int width = buf.getInt();
+		int height = buf.getInt();
+		int maxLvlOffsetX = buf.getInt();
+		int spawnCount = buf.getInt();
+		int words = buf.getInt();
+		buf.getInt(); // reserved
+		byte[] source = new byte[HASH_SIZE];
+		buf.get(source);
+
+		long expected = HEADER_SIZE + (long) width * height + (long) spawnCount * SPAWN_SIZE + (long) height * words * 8;
+		if (width <= 0 || height <= 0 || spawnCount < 0 || words != (width + 63) / 64 || buf.limit() != expected)
+			throw new IOException("Compiled level is damaged or truncated: " + name);
+		if (png != null && !MessageDigest.isEqual(source, SourceHash(png)))
+			throw new IOException("Compiled level was made from another version of its PNG: " + name);
+
+		LevelLayout layout = new LevelLayout(width, height);
+		for (int j = 0; j < height; j++)
+			for (int i = 0; i < width; i++)
+				layout.lvlData[j][i] = buf.get();
+
+		for (int s = 0; s < spawnCount; s++) {
+			int type = buf.get() & 0xFF;
+			int x = buf.getInt();
+			int y = buf.getInt();
+			layout.addSpawn(type, x, y);
+		}
+
+		long[][] solid = new long[height][words];
+		for (int j = 0; j < height; j++)
+			for (int w = 0; w < words; w++)
+				solid[j][w] = buf.getLong();
+		layout.setSolidRows(solid);
+
+		// a file compiled at another scale still has the right tiles, only the pixel bound is off
+		if (tilesSize == Game.TILES_SIZE)
+			layout.setMaxLvlOffsetX(maxLvlOffsetX);
+		return layout;
+	}
+
+	private static byte[] SourceHash(ByteBuffer png) {
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			sha.update(png.duplicate());
+			return sha.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every JVM has SHA-256
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package levels;
+
+import java.util.Arrays;
+
+import main.Game;
+
+// What a level image describes, before any entities are made from it: the tile grid and
+// where each enemy spawns. Built by HelpMethods.ParseLevel in a single pass over the pixels.
+public class LevelLayout {
+
+	public final int width, height; // in tiles
+	public final int[][] lvlData;
+
+	// spawns in the order they appear in the image (row by row), tile coordinates
+	private int[] spawnType = new int[16];
+	private int[] spawnX = new int[16];
+	private int[] spawnY = new int[16];
+	private int spawnCount = 0;
+
+	// camera bound and collision bits, worked out here or read precomputed from a .lvl file
+	private int maxLvlOffsetX;
+	private long[][] solidRows;
+
+	public LevelLayout(int width, int height) {
+		this.width = width;
+		this.height = height;
+		lvlData = new int[height][width];
+		maxLvlOffsetX = Game.TILES_SIZE * (width - Game.TILES_IN_WIDTH);
+	}
+
+	public void addSpawn(int enemyType, int tileX, int tileY) {
+		if (spawnCount == spawnType.length) {
+			spawnType = Arrays.copyOf(spawnType, spawnCount * 2);
+			spawnX = Arrays.copyOf(spawnX, spawnCount * 2);
+			spawnY = Arrays.copyOf(spawnY, spawnCount * 2);
+		}
+		spawnType[spawnCount] = enemyType;
+		spawnX[spawnCount] = tileX;
+		spawnY[spawnCount] = tileY;
+		spawnCount++;
+	}
+
+	public int getSpawnCount() {
+		return spawnCount;
+	}
+
+	public int getSpawnType(int i) {
+		return spawnType[i];
+	}
+
+	public int getSpawnX(int i) {
+		return spawnX[i];
+	}
+
+	public int getSpawnY(int i) {
+		return spawnY[i];
+	}
+
+	public int getMaxLvlOffsetX() {
+		return maxLvlOffsetX;
+	}
+
+	void setMaxLvlOffsetX(int maxLvlOffsetX) {
+		this.maxLvlOffsetX = maxLvlOffsetX;
+	}
+
+	// One bit per tile, set when the tile is solid (anything but 0), 64 columns per long
+	public long[][] getSolidRows() {
+		if (solidRows == null) {
+			long[][] rows = new long[height][(width + 63) / 64];
+			for (int j = 0; j < height; j++)
+				for (int i = 0; i < width; i++)
+					if (lvlData[j][i] != 0)
+						rows[j][i >> 6] |= 1L << (i & 63);
+			solidRows = rows;
+		}
+		return solidRows;
+	}
+
+	void setSolidRows(long[][] solidRows) {
+		this.solidRows = solidRows;
+	}
+}
@@ -3,6 +3,10 @@ package levels;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import gameStates.Gamestate;
 import main.Game;
@@ -12,16 +16,26 @@ public class LevelManager {
 
 	private Game game;
 	private BufferedImage[] levelSprite;
-	private ArrayList<Level>levels;
+	// one slot per level in the manifest, a Level is only built the first time someone asks for it
+	private ArrayList<FutureTask<Level>> levels;
+	private static final ExecutorService preloader = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Level preload");
+		t.setDaemon(true);
+		return t;
+	});
 	
 	private int lvlIndex = 0;
+	
+	// baked tiles of the level being drawn, only chunks near the camera are kept
+	private TileChunk[] chunks = new TileChunk[0];
+	private int chunksLvlIndex = -1;
 	BufferedImage ins_left, ins_right, ins_jump, ins_dash, ins_attack, ins_defeat;
 	public LevelManager(Game game) {
 		this.game = game;
 		importOutsideSprites();
 		levels = new ArrayList<>();
 		buildAllLevels();
-		
+		preloadLevel(lvlIndex + 1);
 	}
 	
 	public void loadNextLevel(){
@@ -33,16 +47,22 @@ public class LevelManager {
 			Gamestate.state = Gamestate.MENU; 
 		}
 		
-		Level newLevel = levels.get(lvlIndex);
+		Level newLevel = getLevel(lvlIndex); // normally already built by the preload
 		game.getPlaying().getEnemyManager().loadEnemies(newLevel);
-		game.getPlaying().getPlayer().loadLvlData(newLevel.getLvlData());
+		game.getPlaying().getPlayer().loadCollisionMap(newLevel.getCollisionMap());
 		game.getPlaying().setMaxLvlOffset(newLevel.getLvlOffset());
+		preloadLevel(lvlIndex + 1);
     }
 	
 	private void buildAllLevels() {
-		BufferedImage [] allLevels = LoadSave.GetAllLevels();
-		for(BufferedImage img: allLevels)
-			levels.add(new Level(img));
+		for (String name : LoadSave.GetLevelNames())
+			levels.add(new FutureTask<>(() -> new Level(LoadSave.GetLevelLayout(name))));
+	}
+	
+	// Builds the level on the preload thread while the current one is being played
+	private void preloadLevel(int index) {
+		if (index < levels.size())
+			preloader.execute(levels.get(index)); // no-op if it has already been built
 	}
 	
 	//load of tilesprites
@@ -56,19 +76,42 @@ public class LevelManager {
 			}
 	}
 
-	public void draw(Graphics g, int lvlOffset) {
-	    // Draw the current level's tiles
-	    for (int j = 0; j < Game.TILES_IN_HEIGHT; j++) {
-	        for (int i = 0; i < levels.get(lvlIndex).getLvlData()[0].length; i++) {
-	            int index = levels.get(lvlIndex).getSpriteIndex(i, j);
-	            g.drawImage(levelSprite[index], Game.TILES_SIZE * i - lvlOffset, Game.TILES_SIZE * j, Game.TILES_SIZE, Game.TILES_SIZE, null);
+	// lvlIndex comes from the render snapshot, not from this class, so the EDT draws the level the snapshot was taken on
+	public void draw(Graphics g, int lvlIndex, int lvlOffset) {
+	    Level level = getLevel(lvlIndex);
+	    if (chunksLvlIndex != lvlIndex) {
+	        int columns = level.getLvlData()[0].length;
+	        chunks = new TileChunk[(columns + TileChunk.CHUNK_WIDTH - 1) / TileChunk.CHUNK_WIDTH];
+	        chunksLvlIndex = lvlIndex;
+	    }
+	    
+	    // Draw only the chunks that overlap the screen
+	    int first = Math.max(0, lvlOffset / TileChunk.PIXEL_WIDTH);
+	    int last = Math.min(chunks.length - 1, (lvlOffset + Game.GAME_WIDTH - 1) / TileChunk.PIXEL_WIDTH);
+	    for (int c = 0; c < chunks.length; c++) {
+	        if (c < first - 1 || c > last + 1) {
+	            chunks[c] = null; // far from the camera, bake it again if we come back
+	            continue;
 	        }
+	        if (c < first || c > last)
+	            continue;
+	        
+	        if (chunks[c] == null)
+	            chunks[c] = new TileChunk(c, level.getLvlData()[0].length);
+	        if (chunks[c].isStale(level))
+	            chunks[c].bake(level, levelSprite);
+	        chunks[c].draw(g, lvlOffset);
 	    }
 
-	    // Only draw instructions for the first level
+	    // Only draw instructions for the first level. Only the renderer touches the images, it lets them go
+	    // once it draws another level, so a draw still on level 1 can't race the game thread moving on.
 	    if (lvlIndex == 0) {
-	        initDrawInstructionsOverlay();
+	        if (ins_left == null)
+	            initDrawInstructionsOverlay();
 	        drawInstructionsOverlay(g, lvlOffset); // Pass the camera offset
+	    } else if (ins_left != null) {
+	        LoadSave.ReleaseLevelAssets(0);
+	        ins_left = ins_right = ins_jump = ins_dash = ins_attack = ins_defeat = null;
 	    }
 	}
 
@@ -76,13 +119,14 @@ public class LevelManager {
 
 	}
 	
+	// loaded on first draw of level 1 instead of every frame, released again by the first draw of another level
 	public void initDrawInstructionsOverlay() {
-		ins_left = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_LEFT);
-		ins_right = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_RIGHT);
-		ins_jump = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_JUMP);
-		ins_dash = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_DASH);
-		ins_attack = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_ATTACK);
-		ins_defeat = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_DEFEAT);
+		ins_left = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_LEFT, 0);
+		ins_right = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_RIGHT, 0);
+		ins_jump = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_JUMP, 0);
+		ins_dash = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_DASH, 0);
+		ins_attack = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_ATTACK, 0);
+		ins_defeat = LoadSave.GetSpriteAtlas(LoadSave.INSTRUCTION_DEFEAT, 0);
 	}
 	
 	public void drawInstructionsOverlay(Graphics g, int lvlOffset) {
@@ -110,7 +154,21 @@ public class LevelManager {
 	
 	
 	public Level getCurrentLevel() {
-		return levels.get(lvlIndex);
+		return getLevel(lvlIndex);
+	}
+	
+	// Builds the level on this thread if nobody has yet, waits for it if the preload is busy with it
+	public Level getLevel(int index) {
+		FutureTask<Level> level = levels.get(index);
+		level.run();
+		try {
+			return level.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not load level " + (index + 1), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading level " + (index + 1), e);
+		}
 	}
 	
 	public int getLvl() {
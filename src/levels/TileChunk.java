@@ -0,0 +1,57 @@
+package levels;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import main.Game;
+import utilz.LoadSave;
+
+// A block of CHUNK_WIDTH x TILES_IN_HEIGHT tiles drawn once into one image at screen scale,
+// so the level costs a few plain blits per frame instead of a scaled drawImage per tile.
+class TileChunk {
+
+	public static final int CHUNK_WIDTH = 16; // in tiles
+	public static final int PIXEL_WIDTH = CHUNK_WIDTH * Game.TILES_SIZE;
+
+	private final int firstColumn, columns;
+	private final BufferedImage image;
+	private int bakedVersion = -1;
+
+	TileChunk(int chunkIndex, int levelColumns) {
+		firstColumn = chunkIndex * CHUNK_WIDTH;
+		columns = Math.min(CHUNK_WIDTH, levelColumns - firstColumn);
+		image = LoadSave.CreateCompatibleImage(columns * Game.TILES_SIZE, Game.TILES_IN_HEIGHT * Game.TILES_SIZE);
+	}
+
+	// true when a tile in this chunk changed after it was baked
+	boolean isStale(Level level) {
+		if (bakedVersion < 0)
+			return true;
+		for (int i = firstColumn; i < firstColumn + columns; i++)
+			if (level.getColumnVersion(i) > bakedVersion)
+				return true;
+		return false;
+	}
+
+	void bake(Level level, BufferedImage[] levelSprite) {
+		bakedVersion = level.getVersion();
+
+		Graphics2D g = image.createGraphics();
+		// sky tiles are see-through, clear whatever the last bake left behind
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.setComposite(AlphaComposite.SrcOver);
+		for (int j = 0; j < Game.TILES_IN_HEIGHT; j++)
+			for (int i = 0; i < columns; i++) {
+				int index = level.getSpriteIndex(firstColumn + i, j);
+				g.drawImage(levelSprite[index], Game.TILES_SIZE * i, Game.TILES_SIZE * j, Game.TILES_SIZE, Game.TILES_SIZE, null);
+			}
+		g.dispose();
+	}
+
+	void draw(Graphics g, int lvlOffset) {
+		g.drawImage(image, firstColumn * Game.TILES_SIZE - lvlOffset, 0, null);
+	}
+}
@@ -0,0 +1,153 @@
+package levels;
+
+import main.Game;
+
+// Every row of a level cut into runs of solid and open tiles: for each tile, the first and last column
+// of the run it is in. A solid run is a stretch of floor, its ends are the ledges an enemy turns at.
+// Built once per level from the CollisionMap, Level.setTile recounts the row it changes.
+//
+// Enemies use it to patrol without looking at tiles every step. getPatrolBounds turns the runs around
+// a walking box into plain pixel limits, and the limits stay good for as long as the box keeps
+// walking the same way at the same height. The limits give the same answers as CanMoveHere followed
+// by IsFloor on the leading edge, the tile each pixel falls in is worked out with the same float division.
+public class WalkableSpans {
+
+	private final CollisionMap collision;
+	private final int width, height; // in tiles
+	private final float pixelWidth;
+	private final int[][] runStart, runEnd;
+	private int version = 0;
+
+	// Where a box walking one way can get to in one go. The box may move to x as long as
+	// x >= boxMin and x + width < boxMax, and the bottom corner on its leading side stays in
+	// floorMin <= corner < floorMax.
+	// x, y and version say which box position and level they were worked out for. They hold from
+	// every x the box walks to in that direction, so the walker moves x along with it.
+	public static class Bounds {
+		public float boxMin, boxMax;
+		public float floorMin, floorMax;
+		public float x, y;
+		public int version = -1; // never worked out
+		public boolean stuck; // the box is inside something solid, there are no limits, check every step
+	}
+
+	public WalkableSpans(CollisionMap collision) {
+		this.collision = collision;
+		this.width = collision.getWidth();
+		this.height = collision.getHeight();
+		this.pixelWidth = width * Game.TILES_SIZE;
+		runStart = new int[height][width];
+		runEnd = new int[height][width];
+		for (int y = 0; y < height; y++)
+			findRuns(y);
+	}
+
+	private void findRuns(int y) {
+		int start = 0;
+		for (int x = 1; x <= width; x++) {
+			if (x == width || collision.isSolidTile(x, y) != collision.isSolidTile(start, y)) {
+				for (int i = start; i < x; i++) {
+					runStart[y][i] = start;
+					runEnd[y][i] = x - 1;
+				}
+				start = x;
+			}
+		}
+	}
+
+	// after the tile at x, y changed
+	void update(int x, int y) {
+		findRuns(y);
+		version++;
+	}
+
+	// first and last column of the run of solid (or open) tiles the tile x, y is in
+	public int getRunStart(int x, int y) {
+		return runStart[y][x];
+	}
+
+	public int getRunEnd(int x, int y) {
+		return runEnd[y][x];
+	}
+
+	// changes whenever a tile does, bounds worked out before that are stale
+	public int getVersion() {
+		return version;
+	}
+
+	// Fills in how far the box x, y, width, height can walk left (or right) from where it is.
+	// A box already inside something solid gets out.stuck instead, there is nothing to go on then and
+	// the caller has to check each step itself.
+	public void getPatrolBounds(float x, float y, float width, float height, boolean left, Bounds out) {
+		out.x = x;
+		out.y = y;
+		out.version = version;
+		out.stuck = !collision.canMoveHere(x, y, width, height);
+		if (out.stuck)
+			return;
+
+		// walls: the open runs around the box, in every row it covers
+		int openFirst = 0, openLast = this.width - 1;
+		if (y + height >= 0) { // entirely above the screen nothing is in the way
+			int firstCol = (int) (x / Game.TILES_SIZE), lastCol = Math.min(this.width - 1, (int) ((x + width) / Game.TILES_SIZE));
+			int firstRow = y < 0 ? 0 : (int) (y / Game.TILES_SIZE), lastRow = (int) ((y + height) / Game.TILES_SIZE);
+			for (int row = firstRow; row <= lastRow; row++) {
+				openFirst = Math.max(openFirst, runStart[row][firstCol]);
+				openLast = Math.min(openLast, runEnd[row][lastCol]);
+			}
+		}
+		out.boxMin = left ? ColumnStart(openFirst) : Float.NEGATIVE_INFINITY;
+		out.boxMax = left ? Float.POSITIVE_INFINITY : openLast == this.width - 1 ? pixelWidth : ColumnStart(openLast + 1);
+
+		// floor: the solid run the leading corner is on, or the one it steps onto next
+		float floorY = y + height + 1;
+		out.floorMin = Float.NEGATIVE_INFINITY;
+		out.floorMax = Float.POSITIVE_INFINITY;
+		if (floorY >= Game.GAME_HEIGHT)
+			return; // below the screen counts as floor
+		if (floorY < 0) {
+			Block(out); // nothing to stand on above the screen
+			return;
+		}
+		int row = (int) (floorY / Game.TILES_SIZE);
+		int col = (int) ((left ? x : x + width) / Game.TILES_SIZE);
+		if (left) {
+			if (!collision.isSolidTile(col, row)) {
+				if (col == 0 || !collision.isSolidTile(col - 1, row)) {
+					Block(out);
+					return;
+				}
+				out.floorMax = ColumnStart(col); // over a gap, only a step onto the tile before counts
+				col--;
+			}
+			if (runStart[row][col] > 0) // left of the level counts as floor
+				out.floorMin = ColumnStart(runStart[row][col]);
+		} else {
+			col = Math.min(col, this.width - 1);
+			if (!collision.isSolidTile(col, row)) {
+				if (col == this.width - 1 || !collision.isSolidTile(col + 1, row)) {
+					Block(out);
+					return;
+				}
+				out.floorMin = ColumnStart(col + 1);
+				col++;
+			}
+			if (runEnd[row][col] < this.width - 1) // so does right of it
+				out.floorMax = ColumnStart(runEnd[row][col] + 1);
+		}
+	}
+
+	private static void Block(Bounds out) {
+		out.floorMin = Float.POSITIVE_INFINITY;
+		out.floorMax = Float.NEGATIVE_INFINITY;
+	}
+
+	// the smallest x >= 0 with (int) (x / TILES_SIZE) >= col, so comparing against it agrees with the
+	// division the tile lookups do, even where it rounds
+	private static float ColumnStart(int col) {
+		float x = col * Game.TILES_SIZE;
+		while (x > 0 && (int) (Math.nextDown(x) / Game.TILES_SIZE) >= col)
+			x = Math.nextDown(x);
+		return x;
+	}
+}
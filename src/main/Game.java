@@ -1,30 +1,49 @@
 package main;
 
 import java.awt.Graphics;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
 
 import audio.AudioManager;
 import audio.AudioPlayer;
 import gameStates.GameOptions;
 import gameStates.Gamestate;
+import gameStates.Loading;
 import gameStates.Menu;
 import gameStates.Playing;
+import inputs.InputRecording;
 import ui.AudioOptions;
+import utilz.LoadSave;
+import utilz.PixelCache;
+import utilz.Profiler;
+import utilz.SpriteCache;
 
 
 public class Game implements Runnable{
 	
 	private GameWindow gameWindow;
 	private GamePanel gamePanel;
+	private GameCanvas gameCanvas; // null when we fell back to the panel
 	
 	private Thread gameThread;
-	private final int FPS_SET = 120;
-	private final int UPS_SET = 200;
+	public final static int FPS_SET = 120;
+	public final static int UPS_SET = 200;
+	private final long TIME_PER_UPDATE = 1000000000L / UPS_SET;
+	private volatile long nextUpdateTime; // read by the EDT to work out the interpolation alpha
+	private final int MAX_CATCH_UP_UPDATES = 5; // max updates in a row before we give up and drop the backlog
 	
 	private Playing playing;
 	private Menu menu;
 	private GameOptions gameOptions;
 	private AudioOptions audioOptions;
 	private AudioPlayer audioPlayer;
+	private Loading loading;
+	
+	// startup timing, reported once the menu is up
+	private long launchTime;
+	private volatile long firstFrameTime = 0;
 	
 	public final static int TILES_DEFAULT_SIZE = 32;
 	public final static float SCALE = 2.25f;
@@ -39,21 +58,41 @@ public class Game implements Runnable{
 	public final static int GAME_HEIGHT= TILES_SIZE * TILES_IN_HEIGHT;
 	
 	
+	// The window and game loop come up first and show the loading screen, while the assets decode
+	// in the background. The states are built in finishLoading once everything is decoded.
 	public Game() {
-        initClasses();
-        
-        gamePanel = new GamePanel(this);
-        gameWindow = new GameWindow(gamePanel);
-        gamePanel.setFocusable(true);
-        gamePanel.requestFocus();
-        
-        // Play menu music on game start (since we typically start in the menu state)
-        if (Gamestate.state == Gamestate.MENU) {
-            AudioManager.playMusic("res/audio/menu_bg.wav");
-        }
+        launchTime = System.nanoTime();
+        loading = new Loading(this);
+        Gamestate.state = Gamestate.LOADING;
+        loading.start();
         
+        initWindow();
         startGameLoop();
     }
+	
+	// Called on the game thread by the loading state. Menu starts the menu music.
+	public void finishLoading() {
+		initClasses();
+		Gamestate.state = Gamestate.MENU;
+		PixelCache.StartWriting(); // the decoding is done, new cache entries can be written now
+		
+		long now = System.nanoTime();
+		long sinceJvmStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		System.out.printf("Startup: first frame after %d ms, %d assets decoded in %d ms on %d threads, menu ready after %d ms (%d ms since JVM start)%n",
+				firstFrameTime / 1000000, loading.getTotal(), loading.getAssetsTime() / 1000000, loading.getThreads(),
+				(now - launchTime) / 1000000, sinceJvmStart);
+	}
+	
+	// No window, no audio and no game loop: whoever made it calls getPlaying().update() themselves.
+	private Game(boolean headless) {
+		AudioManager.setEnabled(false);
+		initClasses();
+		PixelCache.StartWriting(); // no loading screen to wait for
+	}
+	
+	public static Game createHeadless() {
+		return new Game(true);
+	}
 
 	private void initClasses() {
 	    // Initialize AudioManager with default values
@@ -64,6 +103,60 @@ public class Game implements Runnable{
 	    menu = new Menu(this);
 	    playing = new Playing(this);
 	    gameOptions = new GameOptions(this);
+	    
+	    initRecording();
+	    
+	    // p50/p99/max of every profiled phase once the game closes
+	    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	    	Profiler.PrintSummary();
+	    	SpriteCache.PrintStats();
+	    	PixelCache.FinishWrites();
+	    	PixelCache.PrintStats();
+	    	System.out.printf("Assets: %d images, %.1f MB decoded%n", LoadSave.GetAssetCount(), LoadSave.GetAssetBytes() / 1048576.0);
+	    }));
+	}
+	
+	// -Daswang.record=file.rec saves every input played, -Daswang.replay=file.rec plays one back
+	private void initRecording() {
+		String recordPath = System.getProperty("aswang.record");
+		if (recordPath != null)
+			playing.startRecording(Paths.get(recordPath));
+		
+		String replayPath = System.getProperty("aswang.replay");
+		if (replayPath != null) {
+			try {
+				playing.startReplay(InputRecording.load(Paths.get(replayPath)));
+			} catch (IOException e) {
+				System.err.println("Could not load replay " + replayPath);
+				e.printStackTrace();
+			}
+		}
+	}
+
+	// Active rendering on a Canvas unless -Daswang.renderer=panel is set or the
+	// BufferStrategy can't be created, then we fall back to the old repaint() JPanel.
+	private void initWindow() {
+		if (!"panel".equals(System.getProperty("aswang.renderer"))) {
+			gameCanvas = new GameCanvas(this);
+			gameWindow = new GameWindow(this, gameCanvas);
+			try {
+				gameCanvas.initBufferStrategy();
+				gameCanvas.setFocusable(true);
+				gameCanvas.requestFocus();
+				return;
+			} catch (Exception e) {
+				System.err.println("Active rendering unavailable, falling back to JPanel: " + e.getMessage());
+				gameCanvas = null;
+			}
+		}
+		
+		gamePanel = new GamePanel(this);
+		if (gameWindow == null)
+			gameWindow = new GameWindow(this, gamePanel);
+		else
+			gameWindow.setView(gamePanel);
+		gamePanel.setFocusable(true);
+		gamePanel.requestFocus();
 	}
 
 	private void startGameLoop() {
@@ -72,8 +165,13 @@ public class Game implements Runnable{
 	}
 	
 	public void render(Graphics g) { // drawing of each states
+		if (firstFrameTime == 0)
+			firstFrameTime = System.nanoTime() - launchTime;
 		
 		switch(Gamestate.state) {
+		case LOADING:
+			loading.draw(g);
+			break;
 		case MENU:
 			menu.draw(g);
 			break;
@@ -100,6 +198,9 @@ public class Game implements Runnable{
 		case OPTIONS:
 			gameOptions.update();
 			break;
+		case LOADING:
+			loading.update();
+			break;
 		case QUIT:
 		default:
 			System.exit(0);
@@ -109,50 +210,104 @@ public class Game implements Runnable{
 	}
 	
 	// this is where the game loop is []
+	// Fixed timestep: updates run at exactly UPS_SET per second and frames at FPS_SET.
+	// Between deadlines the thread is parked instead of spinning on System.nanoTime().
 	@Override
 	public void run() {
 		
+		long timePerUpdate = TIME_PER_UPDATE;
+		long timePerFrame = 1000000000L / FPS_SET;
+		
+		long nextUpdate = System.nanoTime();
+		long nextFrame = nextUpdate;
+		long lastCheck = nextUpdate;
+		
 		int frames = 0;
-		long lastCheck = 0;	
-		//UPS
-		double timePerUpdate = 1000000000/ UPS_SET;
-		long previousTime = System.nanoTime();
 		int updates = 0;
-		double deltaU = 0;
-		double deltaF = 0;
+		int skippedUpdates = 0;
 		
-		double timePerFrame = 1000000000/ FPS_SET;
+		// jitter = how late we woke up compared to the deadline we parked for
+		long jitterTotal = 0;
+		long jitterMax = 0;
+		int wakeUps = 0;
 		
 		while(true) {
 			long currentTime = System.nanoTime();
 			
-			deltaU+=(currentTime - previousTime) / timePerUpdate;
-			deltaF+=(currentTime - previousTime) / timePerFrame;
-			previousTime = currentTime;
-			if(deltaU >= 1) {
+			// catch up on missed updates, but never more than MAX_CATCH_UP_UPDATES in a row
+			int caughtUp = 0;
+			while(currentTime - nextUpdate >= 0 && caughtUp < MAX_CATCH_UP_UPDATES) {
 				update();
 				updates++;
-				deltaU--;
+				caughtUp++;
+				nextUpdate += timePerUpdate;
+			}
+			nextUpdateTime = nextUpdate;
+			
+			// still behind after a stall: drop the backlog instead of letting it snowball
+			if(currentTime - nextUpdate >= 0) {
+				skippedUpdates += (int) ((currentTime - nextUpdate) / timePerUpdate) + 1;
+				nextUpdate = currentTime + timePerUpdate;
+				nextUpdateTime = nextUpdate;
 			}
 			
-			if(deltaF >= 1) {
-				gamePanel.repaint();
-				frames++;
-				deltaF--;
+			currentTime = System.nanoTime();
+			if(currentTime - nextFrame >= 0) {
+				if(gameCanvas != null) {
+					Profiler.Add(Profiler.PRESENT, gameCanvas.present());
+					frames++;
+				} else {
+					gamePanel.repaint(); // frames are counted in paintComponent
+				}
+				nextFrame += timePerFrame;
+				if(currentTime - nextFrame >= 0)
+					nextFrame = currentTime + timePerFrame;
 			}
 			
-			if(System.currentTimeMillis() - lastCheck >= 1000) {
-				lastCheck = System.currentTimeMillis();
-				System.out.println("FPS: " + frames + " UPS " + updates);
-				frames= 0;
+			if(currentTime - lastCheck >= 1000000000L) {
+				lastCheck = currentTime;
+				long jitterAvg = wakeUps > 0 ? jitterTotal / wakeUps : 0;
+				if(gameCanvas == null)
+					frames = gamePanel.takePaintedFrames();
+				// shown in the F3 overlay, phase timings are collected by the Profiler itself
+				Profiler.SetLoopStats(frames, updates, skippedUpdates, jitterAvg, jitterMax);
+				frames = 0;
 				updates = 0;
+				skippedUpdates = 0;
+				jitterTotal = 0;
+				jitterMax = 0;
+				wakeUps = 0;
+			}
+			
+			long deadline = (nextUpdate - nextFrame < 0) ? nextUpdate : nextFrame;
+			long sleepTime = deadline - System.nanoTime();
+			if(sleepTime > 0) {
+				LockSupport.parkNanos(this, sleepTime);
+				long late = System.nanoTime() - deadline;
+				if(late > 0) {
+					jitterTotal += late;
+					if(late > jitterMax)
+						jitterMax = late;
+				}
+				wakeUps++;
 			}
 		}
 	}
 
+	// How far we are between the last update and the next one (0 = just updated, 1 = next update due).
+	// Renderers blend previous and current positions with this so 120 FPS over 200 UPS moves evenly.
+	public float getInterpolation() {
+		float alpha = 1f - (nextUpdateTime - System.nanoTime()) / (float) TIME_PER_UPDATE;
+		if(alpha < 0f)
+			return 0f;
+		if(alpha > 1f)
+			return 1f;
+		return alpha;
+	}
+
 	public void windowFocusLost() {
 		if(Gamestate.state == Gamestate.PLAYING) {
-			playing.getPlayer().resetDirBooleans();
+			playing.windowFocusLost();
 		}
 	}
 	
@@ -0,0 +1,66 @@
+package main;
+
+import static main.Game.GAME_HEIGHT;
+import static main.Game.GAME_WIDTH;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+import inputs.KeyboardInputs;
+import inputs.MouseInputs;
+
+// Active rendering: the game loop draws straight into a BufferStrategy and flips it,
+// instead of asking Swing to repaint a JPanel some time later.
+public class GameCanvas extends Canvas {
+
+	private Game game;
+	private BufferStrategy bufferStrategy;
+
+	public GameCanvas(Game game) {
+		this.game = game;
+		MouseInputs mouseInputs = new MouseInputs(game);
+
+		setPreferredSize(new Dimension(GAME_WIDTH, GAME_HEIGHT));
+		setIgnoreRepaint(true); // we paint ourselves, don't let the EDT paint over us
+		addKeyListener(new KeyboardInputs(game));
+		addMouseListener(mouseInputs);
+		addMouseMotionListener(mouseInputs);
+	}
+
+	// has to be called after the canvas is inside a visible window
+	public void initBufferStrategy() {
+		createBufferStrategy(2);
+		bufferStrategy = getBufferStrategy();
+	}
+
+	// Draws one frame and shows it. Returns how long it took in nanoseconds.
+	public long present() {
+		long start = System.nanoTime();
+		do {
+			do {
+				Graphics g = bufferStrategy.getDrawGraphics();
+				try {
+					g.setColor(Color.BLACK);
+					g.fillRect(0, 0, GAME_WIDTH, GAME_HEIGHT);
+					game.render(g);
+				} finally {
+					g.dispose();
+				}
+			} while (bufferStrategy.contentsRestored());
+
+			bufferStrategy.show();
+		} while (bufferStrategy.contentsLost());
+
+		// flush the X11 pipeline so the frame actually reaches the screen now
+		Toolkit.getDefaultToolkit().sync();
+		return System.nanoTime() - start;
+	}
+
+	public Game getGame() {
+		return game;
+	}
+}
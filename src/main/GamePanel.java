@@ -2,6 +2,8 @@ package main;
 
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.swing.JPanel;
 import inputs.KeyboardInputs;
 import inputs.MouseInputs;
@@ -14,12 +16,13 @@ public class GamePanel extends JPanel {
 	
 	private Game game;
 	private MouseInputs mouseInputs;
+	private final AtomicInteger paintedFrames = new AtomicInteger();
 	public GamePanel(Game game) {
-		mouseInputs = new MouseInputs(this);
+		mouseInputs = new MouseInputs(game);
 		this.game= game;
 		
 		setPanelSize();
-		addKeyListener(new KeyboardInputs(this));
+		addKeyListener(new KeyboardInputs(game));
 		addMouseListener(mouseInputs);
 		addMouseMotionListener(mouseInputs);
 	}
@@ -35,6 +38,12 @@ public class GamePanel extends JPanel {
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		game.render(g);
+		paintedFrames.incrementAndGet();
+	}
+	
+	// repaint() calls can be coalesced by the EDT, so count the frames that were really painted
+	public int takePaintedFrames() {
+		return paintedFrames.getAndSet(0);
 	}
 	
 	public Game getGame() {
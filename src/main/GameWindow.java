@@ -1,5 +1,6 @@
 package	 main;
 
+import java.awt.Component;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
 
@@ -8,7 +9,10 @@ import javax.swing.JFrame;
 public class GameWindow extends JFrame{
 	
 	
-	public GameWindow(GamePanel gamePanel) {
+	private Component view;
+	
+	public GameWindow(Game game, Component view) {
+		this.view = view;
 		
 		this.setTitle("ASWANG SLAYER");
 		this.getTitle();
@@ -19,7 +23,7 @@ public class GameWindow extends JFrame{
         this.setUndecorated(true);
 
 		
-		this.add(gamePanel);
+		this.add(view);
 		this.pack();
 		this.setLocationRelativeTo(null);
 		this.setVisible(true);
@@ -27,7 +31,7 @@ public class GameWindow extends JFrame{
 
 			@Override
 			public void windowGainedFocus(WindowEvent e) {
-				gamePanel.getGame().windowFocusLost();
+				game.windowFocusLost();
 			}
 
 			@Override
@@ -38,5 +42,14 @@ public class GameWindow extends JFrame{
 			
 		});
 	}
+	
+	// swap what the window shows, used to fall back from the canvas to the panel
+	public void setView(Component newView) {
+		this.remove(view);
+		this.view = newView;
+		this.add(newView);
+		this.pack();
+		this.validate();
+	}
 
 }
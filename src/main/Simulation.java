@@ -0,0 +1,159 @@
+package main;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import gameStates.Gamestate;
+import gameStates.Playing;
+import inputs.InputRecord;
+import inputs.InputRecording;
+
+// Runs the Playing logic with no window, no audio and no frame pacing, so hours of play
+// can be simulated in seconds for balancing and regression runs.
+//
+// Usage: java -Djava.awt.headless=true main.Simulation <ticks> [script file | recording.rec]
+//
+// Script lines are "<tick> <press|release> <key>" or "<tick> click", keys are KeyEvent
+// names without the VK_ prefix (A, D, SPACE, SHIFT, ESCAPE). Lines starting with # are skipped.
+//   0 press D
+//   150 press SPACE
+//   151 release SPACE
+//   400 click
+public class Simulation {
+
+	private static class ScriptedInput {
+		final int tick;
+		final String action;
+		final int code;
+
+		ScriptedInput(int tick, String action, int code) {
+			this.tick = tick;
+			this.action = action;
+			this.code = code;
+		}
+	}
+
+	private Playing playing;
+	private List<ScriptedInput> script = new ArrayList<>();
+	private int nextInput = 0;
+	private int tick = 0;
+
+	private int deaths = 0;
+	private int levelsCompleted = 0;
+
+	public Simulation() {
+		Game game = Game.createHeadless();
+		playing = game.getPlaying();
+		Gamestate.state = Gamestate.PLAYING;
+	}
+
+	public void loadScript(String path) throws IOException {
+		for (String line : Files.readAllLines(Paths.get(path))) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			String[] parts = line.split("\\s+");
+			int inputTick = Integer.parseInt(parts[0]);
+			String action = parts[1].toLowerCase();
+			int code = action.equals("click") ? MouseEvent.BUTTON1 : GetKeyCode(parts[2]);
+			addInput(inputTick, action, code);
+		}
+	}
+
+	// Feeds a recording made with -Daswang.record instead of a text script
+	public void loadReplay(String path) throws IOException {
+		playing.startReplay(InputRecording.load(Paths.get(path)));
+	}
+
+	public void addInput(int inputTick, String action, int code) {
+		// keep the list sorted by tick, inputs on the same tick stay in the order they were added
+		int i = script.size();
+		while (i > 0 && script.get(i - 1).tick > inputTick)
+			i--;
+		script.add(i, new ScriptedInput(inputTick, action, code));
+	}
+
+	// Runs the given number of updates as fast as possible
+	public void step(int ticks) {
+		for (int i = 0; i < ticks; i++) {
+			applyInputs();
+			playing.update();
+			tick++;
+
+			if (playing.isGameOver()) {
+				deaths++;
+				playing.resetAll();
+			} else if (playing.isLevelCompleted()) {
+				levelsCompleted++;
+				playing.loadNextLevel();
+			}
+		}
+	}
+
+	private void applyInputs() {
+		while (nextInput < script.size() && script.get(nextInput).tick <= tick) {
+			ScriptedInput input = script.get(nextInput++);
+			switch (input.action) {
+			case "press" -> playing.queueInput(InputRecord.Key(InputRecord.KEY_PRESSED, input.code));
+			case "release" -> playing.queueInput(InputRecord.Key(InputRecord.KEY_RELEASED, input.code));
+			case "click" -> playing.queueInput(InputRecord.Mouse(InputRecord.MOUSE_CLICKED, input.code, 0, 0));
+			default -> System.err.println("Unknown scripted input: " + input.action);
+			}
+		}
+	}
+
+	private static int GetKeyCode(String name) {
+		try {
+			return KeyEvent.class.getField("VK_" + name.toUpperCase()).getInt(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Unknown key: " + name);
+		}
+	}
+
+	public Playing getPlaying() {
+		return playing;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	public int getDeaths() {
+		return deaths;
+	}
+
+	public int getLevelsCompleted() {
+		return levelsCompleted;
+	}
+
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : Game.UPS_SET * 60;
+		Simulation sim = new Simulation();
+		if (args.length > 1) {
+			if (args[1].endsWith(".rec"))
+				sim.loadReplay(args[1]);
+			else
+				sim.loadScript(args[1]);
+		}
+
+		long start = System.nanoTime();
+		sim.step(ticks);
+		long elapsed = System.nanoTime() - start;
+
+		double seconds = elapsed / 1e9;
+		System.out.printf("Simulated %d ticks (%.1f s of play) in %.2f s, %.0f ticks/s, %.0fx real time%n",
+				ticks, ticks / (double) Game.UPS_SET, seconds, ticks / seconds, ticks / (double) Game.UPS_SET / seconds);
+		System.out.println("Level " + (sim.getPlaying().getLevelManager().getLvl() + 1) + ", health "
+				+ sim.getPlaying().getPlayer().getCurrentHealth() + ", deaths " + sim.getDeaths()
+				+ ", levels completed " + sim.getLevelsCompleted());
+		System.exit(0);
+	}
+}
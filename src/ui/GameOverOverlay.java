@@ -57,8 +57,8 @@ public class GameOverOverlay {
         play.update();
     }
 
-    public void keyPressed(KeyEvent e) {
-        if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+    public void keyPressed(int keyCode) {
+        if (keyCode == KeyEvent.VK_ESCAPE) {
             playing.resetAll();
             Gamestate.state = Gamestate.MENU;
         }
@@ -0,0 +1,184 @@
+package utilz;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+// All of res/ packed into one file (see AssetPacker) and memory mapped. Entries are handed out as
+// read only slices of the mapping, so nothing is copied until whoever reads them needs to.
+// Images can also be packed already decoded, those skip ImageIO completely.
+//
+// The game uses assets.pak from the working directory, or -Daswang.assets=<file>. Without one
+// LoadSave and AudioPlayer read the loose files from res/ like before, which is what you want while
+// working on the assets.
+//
+// Layout (big endian):
+//   int  magic "ASPK", int version, int entry count, long offset of the table of contents
+//   entries, each starting on an ALIGNMENT boundary
+//   table of contents, per entry: UTF-8 name (short length + bytes), byte kind, long offset, long length,
+//   and for PIXELS entries int width, int height
+public class AssetArchive {
+
+	public static final int MAGIC = 0x4153504B; // "ASPK"
+	public static final int VERSION = 2;
+	public static final int ALIGNMENT = 64;
+
+	public static final byte RAW = 0; // the file as it is on disk
+	public static final byte PIXELS = 1; // decoded image, width * height premultiplied ARGB ints
+
+	// suffix of the decoded copy of an image, "player_atlas.png" + PIXELS_SUFFIX
+	public static final String PIXELS_SUFFIX = "#argb";
+
+	private static class Entry {
+		byte kind;
+		int offset, length;
+		int width, height;
+	}
+
+	private final ByteBuffer data;
+	private final HashMap<String, Entry> entries = new HashMap<>();
+
+	private static AssetArchive archive;
+	private static boolean opened = false;
+
+	// The archive the game reads from, or null when it should use the loose files
+	public static synchronized AssetArchive Get() {
+		if (!opened) {
+			opened = true;
+			Path path = Paths.get(System.getProperty("aswang.assets", "assets.pak"));
+			if (Files.isRegularFile(path)) {
+				try {
+					archive = Open(path);
+					System.out.println("Assets from " + path + " (" + archive.entries.size() + " entries)");
+				} catch (IOException e) {
+					System.err.println("Could not open " + path + ", using loose files: " + e.getMessage());
+				}
+			}
+		}
+		return archive;
+	}
+
+	public static AssetArchive Open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new AssetArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	private AssetArchive(ByteBuffer data) throws IOException {
+		this.data = data;
+		if (data.limit() < 20 || data.getInt(0) != MAGIC)
+			throw new IOException("Not an asset archive");
+		if (data.getInt(4) != VERSION)
+			throw new IOException("Unsupported asset archive version " + data.getInt(4));
+		int count = data.getInt(8);
+		long tocOffset = data.getLong(12);
+
+		ByteBuffer toc = data.duplicate();
+		toc.position((int) tocOffset);
+		for (int i = 0; i < count; i++) {
+			byte[] name = new byte[toc.getShort() & 0xFFFF];
+			toc.get(name);
+			Entry entry = new Entry();
+			entry.kind = toc.get();
+			entry.offset = (int) toc.getLong();
+			entry.length = (int) toc.getLong();
+			if (entry.kind == PIXELS) {
+				entry.width = toc.getInt();
+				entry.height = toc.getInt();
+			}
+			if (entry.offset < 0 || entry.offset + (long) entry.length > tocOffset)
+				throw new IOException("Asset archive entry out of range: " + new String(name, StandardCharsets.UTF_8));
+			entries.put(new String(name, StandardCharsets.UTF_8), entry);
+		}
+	}
+
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	// Read only view of the entry, shares memory with the mapping. Null if it isn't packed.
+	public ByteBuffer getBuffer(String name) {
+		Entry entry = entries.get(name);
+		if (entry == null)
+			return null;
+		return data.duplicate().position(entry.offset).limit(entry.offset + entry.length).slice().asReadOnlyBuffer();
+	}
+
+	public InputStream openStream(String name) {
+		ByteBuffer buffer = getBuffer(name);
+		return buffer == null ? null : new BufferInputStream(buffer);
+	}
+
+	// The decoded copy as TYPE_INT_ARGB_PRE, like PixelCache.Decode returns images. Null if the image
+	// wasn't packed with --pixels.
+	public BufferedImage readPixels(String name) {
+		Entry pixels = entries.get(name + PIXELS_SUFFIX);
+		if (pixels == null)
+			return null;
+		BufferedImage img = new BufferedImage(pixels.width, pixels.height, BufferedImage.TYPE_INT_ARGB_PRE);
+		int[] argb = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+		getBuffer(name + PIXELS_SUFFIX).asIntBuffer().get(argb); // one bulk copy, no decoding
+		return img;
+	}
+
+	// InputStream over a buffer, mark/reset included since AudioSystem needs it to sniff the format
+	static class BufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0)
+				return 0;
+			if (!buffer.hasRemaining())
+				return -1;
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+		@Override
+		public long skip(long n) {
+			int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return true;
+		}
+
+		@Override
+		public synchronized void mark(int readLimit) {
+			buffer.mark();
+		}
+
+		@Override
+		public synchronized void reset() {
+			buffer.reset();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package utilz;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+// Packs everything under res/ into one AssetArchive. Run it after changing any asset (and after
+// LevelCompiler, so the packed .lvl files are current):
+//
+//   java utilz.AssetPacker [res dir] [output file] [--pixels]
+//
+// Defaults are res and assets.pak. With --pixels every image outside lvls/ is also stored decoded,
+// which skips PNG decoding at startup for a much bigger file (about 70x for the atlases).
+public class AssetPacker {
+
+	public static void main(String[] args) throws IOException {
+		boolean pixels = false;
+		List<String> paths = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.equals("--pixels"))
+				pixels = true;
+			else
+				paths.add(arg);
+		}
+		Path resDir = Paths.get(paths.size() > 0 ? paths.get(0) : "res");
+		Path out = Paths.get(paths.size() > 1 ? paths.get(1) : "assets.pak");
+
+		long start = System.nanoTime();
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(resDir)) {
+			files = walk.filter(Files::isRegularFile).filter(p -> !p.toAbsolutePath().equals(out.toAbsolutePath())).sorted()
+					.collect(Collectors.toList());
+		}
+
+		ByteArrayOutputStream tocBytes = new ByteArrayOutputStream();
+		DataOutputStream toc = new DataOutputStream(tocBytes);
+		int count = 0;
+
+		try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(AssetArchive.ALIGNMENT); // header is written last, once the toc offset is known
+
+			for (Path file : files) {
+				String name = resDir.relativize(file).toString().replace('\\', '/');
+				byte[] bytes = Files.readAllBytes(file);
+				long offset = WriteAligned(channel, ByteBuffer.wrap(bytes));
+				WriteTocEntry(toc, name, AssetArchive.RAW, offset, bytes.length);
+				count++;
+
+				if (pixels && name.endsWith(".png") && !name.startsWith("lvls/")) {
+					BufferedImage img = PixelCache.Premultiply(ImageIO.read(file.toFile()));
+					int w = img.getWidth(), h = img.getHeight();
+					ByteBuffer argb = ByteBuffer.allocate(w * h * 4);
+					argb.asIntBuffer().put(((DataBufferInt) img.getRaster().getDataBuffer()).getData());
+					offset = WriteAligned(channel, argb);
+					WriteTocEntry(toc, name + AssetArchive.PIXELS_SUFFIX, AssetArchive.PIXELS, offset, w * h * 4);
+					toc.writeInt(w);
+					toc.writeInt(h);
+					count++;
+				}
+			}
+
+			long tocOffset = WriteAligned(channel, ByteBuffer.wrap(tocBytes.toByteArray()));
+
+			ByteBuffer header = ByteBuffer.allocate(20);
+			header.putInt(AssetArchive.MAGIC).putInt(AssetArchive.VERSION).putInt(count).putLong(tocOffset).flip();
+			channel.write(header, 0);
+		}
+
+		System.out.printf("Packed %d entries from %s into %s, %.1f MB in %d ms%n", count, resDir, out, Files.size(out) / 1048576.0,
+				(System.nanoTime() - start) / 1000000);
+	}
+
+	// pads up to the next ALIGNMENT boundary first, returns where the data starts
+	private static long WriteAligned(FileChannel channel, ByteBuffer data) throws IOException {
+		long offset = (channel.position() + AssetArchive.ALIGNMENT - 1) / AssetArchive.ALIGNMENT * AssetArchive.ALIGNMENT;
+		channel.position(offset);
+		while (data.hasRemaining())
+			channel.write(data);
+		return offset;
+	}
+
+	private static void WriteTocEntry(DataOutputStream toc, String name, byte kind, long offset, long length) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		toc.writeShort(nameBytes.length);
+		toc.write(nameBytes);
+		toc.writeByte(kind);
+		toc.writeLong(offset);
+		toc.writeLong(length);
+	}
+}
@@ -6,6 +6,14 @@ public class Constants {
 	
 	public static final float GRAVITY = 0.03f * Game.SCALE;
 	
+	// Timers count updates instead of reading the wall clock, so headless runs and replays behave the same
+	public static int MillisToTicks(int millis) {
+		return millis * Game.UPS_SET / 1000;
+	}
+	
+	// a tick far enough in the past that any cooldown started on it is already over
+	public static final long LONG_AGO = -1000000;
+	
 	public static class PlayerConstants{
 		public static final int IDLE = 0;
 		public static final int RUNNING = 1;
@@ -1,17 +1,35 @@
 package utilz;
 
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.ImageIO;
 
 import entities.Sigbin;
+import levels.LevelFile;
+import levels.LevelLayout;
 import main.Game;
 import static utilz.Constants.EnemyConstants.*;
 
@@ -55,62 +73,170 @@ public class LoadSave {
 	public static final String INSTRUCTION_DEFEAT = "defeat_instructions.png";
 
 
-	public static BufferedImage GetSpriteAtlas(String fileName) {
-		BufferedImage img = null;
-		InputStream is = LoadSave.class.getResourceAsStream("/" + fileName);
-		try {
-			img = ImageIO.read(is);
+	// Asset cache: every image is decoded once and the same instance is handed to every caller,
+	// so treat what you get back as read only. If two threads ask for the same file at the same
+	// time only one of them decodes it, the other waits for that result.
+	// Assets loaded for a level are kept until ReleaseLevelAssets, the rest live for the whole game.
+	public static final int GLOBAL = -1;
+	
+	private static final ConcurrentHashMap<String, Future<BufferedImage>> assets = new ConcurrentHashMap<>();
+	private static final HashMap<String, HashSet<Integer>> assetOwners = new HashMap<>(); // which levels (or GLOBAL) use an asset
+	private static final AtomicLong assetBytes = new AtomicLong();
 
-		} catch (IOException e) {
-			e.printStackTrace();
-		} finally {
-			try {
-				is.close();
-			} catch (IOException e) {
-				e.printStackTrace();
+	public static BufferedImage GetSpriteAtlas(String fileName) {
+		return GetSpriteAtlas(fileName, GLOBAL);
+	}
+	
+	// lvlIndex is the level the asset belongs to, it is dropped again by ReleaseLevelAssets(lvlIndex)
+	public static BufferedImage GetSpriteAtlas(String fileName, int lvlIndex) {
+		synchronized (assetOwners) {
+			assetOwners.computeIfAbsent(fileName, k -> new HashSet<>()).add(lvlIndex);
+		}
+		
+		Future<BufferedImage> asset = assets.get(fileName);
+		if (asset == null) {
+			FutureTask<BufferedImage> load = new FutureTask<>(() -> ReadImage(fileName));
+			asset = assets.putIfAbsent(fileName, load);
+			if (asset == null) {
+				asset = load;
+				load.run(); // we won the race, decode it on this thread
 			}
 		}
+		
+		try {
+			return asset.get();
+		} catch (ExecutionException e) {
+			assets.remove(fileName, asset); // let the next call try again
+			e.getCause().printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+	
+	private static BufferedImage ReadImage(String fileName) throws IOException {
+		BufferedImage img = null;
+		AssetArchive archive = AssetArchive.Get();
+		if (archive != null)
+			img = archive.readPixels(fileName);
+		if (img == null)
+			img = PixelCache.Decode(fileName, GetResourceBuffer(fileName));
+		assetBytes.addAndGet(GetImageBytes(img));
 		return img;
 	}
+	
+	// the packed entry (no copy) or the loose file's bytes
+	private static ByteBuffer GetResourceBuffer(String fileName) throws IOException {
+		AssetArchive archive = AssetArchive.Get();
+		if (archive != null && archive.contains(fileName))
+			return archive.getBuffer(fileName);
+		try (InputStream is = LoadSave.class.getResourceAsStream("/" + fileName)) {
+			if (is == null)
+				throw new IOException("Missing resource: " + fileName);
+			return ByteBuffer.wrap(is.readAllBytes());
+		}
+	}
+	
+	// Packed asset if there is an archive that has it, loose file otherwise. Null if neither exists.
+	public static InputStream GetResourceStream(String fileName) {
+		AssetArchive archive = AssetArchive.Get();
+		if (archive != null && archive.contains(fileName))
+			return archive.openStream(fileName);
+		return LoadSave.class.getResourceAsStream("/" + fileName);
+	}
+	
+	// Drops the assets only this level was using. Anything also used globally or by another level stays.
+	public static void ReleaseLevelAssets(int lvlIndex) {
+		synchronized (assetOwners) {
+			Iterator<Map.Entry<String, HashSet<Integer>>> it = assetOwners.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<String, HashSet<Integer>> entry = it.next();
+				if (!entry.getValue().remove(lvlIndex) || !entry.getValue().isEmpty())
+					continue;
+				
+				it.remove();
+				Future<BufferedImage> asset = assets.remove(entry.getKey());
+				if (asset != null && asset.isDone()) {
+					try {
+						assetBytes.addAndGet(-GetImageBytes(asset.get()));
+					} catch (ExecutionException | InterruptedException e) {
+						// never loaded, nothing to give back
+					}
+				}
+			}
+		}
+	}
+	
+	// A blank translucent image for drawing into at runtime. Images matching the screen format can be
+	// kept in video memory by Java2D.
+	public static BufferedImage CreateCompatibleImage(int width, int height) {
+		if (!GraphicsEnvironment.isHeadless())
+			return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+					.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+	}
+	
+	private static long GetImageBytes(BufferedImage img) {
+		DataBuffer buffer = img.getRaster().getDataBuffer();
+		return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+	}
+	
+	// decoded size of everything in the asset cache
+	public static long GetAssetBytes() {
+		return assetBytes.get();
+	}
+	
+	public static int GetAssetCount() {
+		return assets.size();
+	}
 
 	
 	
 	
-	public static BufferedImage [] GetAllLevels() {
-		URL url = LoadSave.class.getResource("/lvls");
-		File file = null;
-		
-		try {
-			file = new File(url.toURI());
-		} catch (URISyntaxException e) {
+	public static final String LEVEL_MANIFEST = "lvls/levels.txt";
+	
+	// Level names in play order, from the manifest on the classpath (works from a jar, unlike listing the folder)
+	public static String[] GetLevelNames() {
+		ArrayList<String> names = new ArrayList<>();
+		try (InputStream is = GetResourceStream(LEVEL_MANIFEST)) {
+			if (is == null)
+				throw new IOException("Missing level manifest " + LEVEL_MANIFEST);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#"))
+					names.add(line);
+			}
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		
-		File[] files = file.listFiles();
-		File[] filesSorted = new File[files.length];
-		
-		
-		//sorting
-		for(int i = 0; i< filesSorted.length; i++) {
-			for(int j = 0; j< files.length; j++) {
-				if(files[j].getName().equals((i+1) + ".png"))
-					filesSorted[i] = files[j];
-			}	
+		return names.toArray(new String[0]);
+	}
+	
+	// Loads from the compiled .lvl when there is one that was made from the current PNG (memory mapped,
+	// see LevelCompiler), otherwise from the PNG
+	public static LevelLayout GetLevelLayout(String name) throws IOException {
+		String pngName = "lvls/" + name + ".png", compiledName = "lvls/" + name + LevelFile.EXTENSION;
+		ByteBuffer png = null;
+		try (InputStream is = GetResourceStream(pngName)) {
+			if (is != null)
+				png = ByteBuffer.wrap(is.readAllBytes());
 		}
 		
-		BufferedImage [] imgs = new BufferedImage [filesSorted.length];
-		
-		for(int i = 0; i< files.length; i++) {
-			try {
-				imgs[i] = ImageIO.read(filesSorted[i]);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}	
-
-		
-		return imgs;
+		try {
+			AssetArchive archive = AssetArchive.Get();
+			if (archive != null && archive.contains(compiledName))
+				return LevelFile.Read(archive.getBuffer(compiledName), name, png);
+			URL compiled = LoadSave.class.getResource("/" + compiledName);
+			if (compiled != null)
+				return LevelFile.Load(compiled, png);
+		} catch (IOException e) {
+			System.err.println(e.getMessage() + ", using the PNG instead");
+		}
+		if (png == null)
+			throw new IOException("Missing level " + name);
+		return HelpMethods.ParseLevel(ImageIO.read(new AssetArchive.BufferInputStream(png)));
 	}
 	
-	
 }
@@ -0,0 +1,222 @@
+package utilz;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+// Decoded images kept on disk, so later launches skip PNG decoding. Inflating the big atlases is
+// most of the startup time, reading the same pixels back from a mapped file is a plain copy.
+//
+// Entries are raw premultiplied ARGB named after the image and a hash of its PNG bytes, so an
+// edited image simply misses. The miss decodes the PNG, converts it to TYPE_INT_ARGB_PRE like a hit
+// returns it, and hands it back right away. Writing the new entry (and deleting the old one) happens
+// on a background thread, held back until StartWriting so it doesn't compete with the loading screen.
+//
+// Lives in ~/.aswang/pixel-cache, or -Daswang.pixelcache=<dir>. -Daswang.pixelcache=off turns it off.
+//
+// Entry layout (little endian, the byte order of every machine we run on):
+//   int magic "ASPX", int version, int width, int height, then width * height ARGB_PRE ints
+public class PixelCache {
+
+	private static final int MAGIC = 0x41535058; // "ASPX"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final String EXTENSION = ".argb";
+
+	private static final Path DIR = GetCacheDir();
+
+	private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Pixel cache writer");
+		t.setDaemon(true);
+		t.setPriority(Thread.MIN_PRIORITY);
+		return t;
+	});
+
+	private static int hits, misses;
+
+	// writes of entries missed before StartWriting
+	private static final ArrayList<Runnable> heldWrites = new ArrayList<>();
+	private static boolean writing = false; // guarded by heldWrites
+
+	private static Path GetCacheDir() {
+		String dir = System.getProperty("aswang.pixelcache");
+		if ("off".equals(dir))
+			return null;
+		if (dir != null)
+			return Paths.get(dir);
+		return Paths.get(System.getProperty("user.home"), ".aswang", "pixel-cache");
+	}
+
+	// The image in png, from the cache when it has this exact PNG, otherwise decoded (and cached for next time)
+	public static BufferedImage Decode(String fileName, ByteBuffer png) throws IOException {
+		if (DIR == null)
+			return Premultiply(DecodePng(fileName, png));
+
+		String prefix = fileName.replace('/', '_').replace('\\', '_') + "-";
+		Path entry = DIR.resolve(prefix + Hash(png) + EXTENSION);
+
+		if (Files.isRegularFile(entry)) {
+			try {
+				BufferedImage img = Read(entry);
+				Count(true);
+				return img;
+			} catch (IOException e) {
+				System.err.println("Pixel cache entry " + entry.getFileName() + " unusable, decoding instead: " + e.getMessage());
+			}
+		}
+
+		Count(false);
+		BufferedImage img = Premultiply(DecodePng(fileName, png));
+		QueueWrite(() -> Write(entry, prefix, img)); // only reads img, the game can use it meanwhile
+		return img;
+	}
+
+	private static BufferedImage DecodePng(String fileName, ByteBuffer png) throws IOException {
+		BufferedImage img = ImageIO.read(new AssetArchive.BufferInputStream(png.duplicate()));
+		if (img == null)
+			throw new IOException("Not an image: " + fileName);
+		return img;
+	}
+
+	private static void QueueWrite(Runnable write) {
+		synchronized (heldWrites) {
+			if (!writing) {
+				heldWrites.add(write);
+				return;
+			}
+		}
+		writer.execute(write);
+	}
+
+	// Called once startup decoding is over, entries missed until then are written from here on
+	public static void StartWriting() {
+		synchronized (heldWrites) {
+			writing = true;
+			for (Runnable write : heldWrites)
+				writer.execute(write);
+			heldWrites.clear();
+		}
+	}
+
+	// Gives writes already handed to the writer a moment to finish on exit, the daemon thread would
+	// otherwise die halfway through them. Entries still held back are dropped, they miss next time.
+	public static void FinishWrites() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(2, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static BufferedImage Read(Path entry) throws IOException {
+		try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+				throw new IOException("bad header");
+			int width = buf.getInt(8), height = buf.getInt(12);
+			if (width <= 0 || height <= 0 || buf.limit() != HEADER_SIZE + (long) width * height * 4)
+				throw new IOException("truncated");
+
+			BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+			buf.position(HEADER_SIZE);
+			buf.asIntBuffer().get(pixels);
+			return img;
+		}
+	}
+
+	// Written to a temp file and moved into place, a half written entry is never picked up
+	private static void Write(Path entry, String prefix, BufferedImage img) {
+		try {
+			Files.createDirectories(DIR);
+			DeleteStale(prefix, entry);
+
+			int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+			ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + pixels.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(MAGIC).putInt(VERSION).putInt(img.getWidth()).putInt(img.getHeight());
+			buf.asIntBuffer().put(pixels); // a view, buf itself is still just past the header
+			buf.rewind();
+
+			Path temp = entry.resolveSibling(entry.getFileName() + ".tmp");
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (buf.hasRemaining())
+					channel.write(buf);
+			}
+			Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Could not write pixel cache entry " + entry.getFileName() + ": " + e.getMessage());
+		}
+	}
+
+	// entries (and unfinished writes) of older versions of the same image
+	private static void DeleteStale(String prefix, Path keep) throws IOException {
+		try (DirectoryStream<Path> old = Files.newDirectoryStream(DIR, prefix + "*")) {
+			for (Path path : old) {
+				// just a hash after the prefix, not a longer file name that happens to start the same
+				String rest = path.getFileName().toString().substring(prefix.length());
+				if (!path.equals(keep) && rest.matches("[0-9a-f]{24}\\" + EXTENSION + "(\\.tmp)?"))
+					Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	// Same pixels in the format Java2D blends fastest, every image Decode returns is like this and so
+	// are the decoded copies AssetPacker stores
+	static BufferedImage Premultiply(BufferedImage src) {
+		if (src.getType() == BufferedImage.TYPE_INT_ARGB_PRE)
+			return src;
+		BufferedImage img = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = img.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(src, 0, 0, null);
+		g.dispose();
+		return img;
+	}
+
+	private static String Hash(ByteBuffer png) {
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			sha.update(png.duplicate());
+			byte[] digest = sha.digest();
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < 12; i++) // 96 bits is plenty to tell versions of one file apart
+				hex.append(String.format("%02x", digest[i]));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every JVM has SHA-256
+		}
+	}
+
+	private static synchronized void Count(boolean hit) {
+		if (hit)
+			hits++;
+		else
+			misses++;
+	}
+
+	public static synchronized void PrintStats() {
+		if (hits + misses > 0)
+			System.out.println("Pixel cache: " + hits + " hits, " + misses + " misses" + (DIR == null ? "" : " (" + DIR + ")"));
+	}
+}
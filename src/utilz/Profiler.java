@@ -0,0 +1,190 @@
+package utilz;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+
+import main.Game;
+
+// Per-phase timings for the update and draw code. Every phase keeps the last SAMPLES timings in a
+// ring buffer for the graph overlay (toggle with F3 while playing) and a microsecond histogram of
+// the whole session for the p50/p99/max summary printed on exit.
+//
+// Usage: long start = Profiler.Begin(); ...work...; Profiler.End(Profiler.PLAYER_UPDATE, start);
+//
+// Each phase is only ever recorded from one thread (update phases from the game thread, draw phases
+// from whichever thread renders), the overlay just reads whatever is there. Accumulated sums are
+// kept per thread, so the enemy workers can add to COLLISION too: each hands its sum back with Take
+// and the game thread adds it to its own with AddPending before the Flush. Recording a timing never
+// allocates.
+public class Profiler {
+
+	// update phases, game thread
+	public static final int UPDATE = 0;
+	public static final int PLAYER_UPDATE = 1;
+	public static final int ENEMY_UPDATE = 2;
+	public static final int COLLISION = 3; // sum of every collision query in one update
+	// draw phases
+	public static final int DRAW = 4;
+	public static final int PARALLAX = 5;
+	public static final int LEVEL_DRAW = 6;
+	public static final int PLAYER_DRAW = 7;
+	public static final int ENEMY_DRAW = 8;
+	public static final int OVERLAY_DRAW = 9;
+	public static final int PRESENT = 10; // whole frame including the buffer flip, canvas renderer only
+
+	private static final String[] PHASE_NAMES = { "update", " player", " enemies", " collision", "draw", " parallax", " level",
+			" player", " enemies", " overlays", "present" };
+	private static final int PHASES = PHASE_NAMES.length;
+
+	private static final int SAMPLES = 240;
+	private static final int HISTOGRAM_BUCKETS = 20000; // 1us each, anything slower lands in the last one
+
+	private static final long[][] samples = new long[PHASES][SAMPLES];
+	private static final int[] sampleIndex = new int[PHASES];
+	private static final int[][] histogram = new int[PHASES][HISTOGRAM_BUCKETS];
+	private static final long[] count = new long[PHASES];
+	private static final long[] total = new long[PHASES];
+	private static final long[] max = new long[PHASES];
+	// Accumulate sums per thread, the enemy updates run on several
+	private static final ThreadLocal<long[]> pending = ThreadLocal.withInitial(() -> new long[PHASES]);
+
+	// once a second from Game.run
+	private static volatile int fps, ups, skipped;
+	private static volatile long jitterAvg, jitterMax;
+
+	private static volatile boolean overlayVisible = false;
+
+	public static long Begin() {
+		return System.nanoTime();
+	}
+
+	// returns the end time, so back to back phases can chain: start = Profiler.End(A, start);
+	public static long End(int phase, long start) {
+		long now = System.nanoTime();
+		Add(phase, now - start);
+		return now;
+	}
+
+	// for phases made of many short calls, they are summed up and stored once with Flush
+	public static void Accumulate(int phase, long start) {
+		pending.get()[phase] += System.nanoTime() - start;
+	}
+
+	// What this thread accumulated for phase since the last Take or Flush, for work done on behalf of
+	// another thread. Clears it.
+	public static long Take(int phase) {
+		long[] sums = pending.get();
+		long nanos = sums[phase];
+		sums[phase] = 0;
+		return nanos;
+	}
+
+	// adds to this thread's sum for phase, like Accumulate does
+	public static void AddPending(int phase, long nanos) {
+		pending.get()[phase] += nanos;
+	}
+
+	public static void Flush(int phase) {
+		long[] sums = pending.get();
+		Add(phase, sums[phase]);
+		sums[phase] = 0;
+	}
+
+	public static void Add(int phase, long nanos) {
+		int i = sampleIndex[phase];
+		samples[phase][i] = nanos;
+		sampleIndex[phase] = (i + 1) % SAMPLES;
+
+		int bucket = (int) Math.min(nanos / 1000, HISTOGRAM_BUCKETS - 1);
+		histogram[phase][bucket]++;
+		count[phase]++;
+		total[phase] += nanos;
+		if (nanos > max[phase])
+			max[phase] = nanos;
+	}
+
+	public static void SetLoopStats(int framesPerSecond, int updatesPerSecond, int skippedUpdates, long jitterAvgNanos, long jitterMaxNanos) {
+		fps = framesPerSecond;
+		ups = updatesPerSecond;
+		skipped = skippedUpdates;
+		jitterAvg = jitterAvgNanos;
+		jitterMax = jitterMaxNanos;
+	}
+
+	public static void ToggleOverlay() {
+		overlayVisible = !overlayVisible;
+	}
+
+	public static boolean IsOverlayVisible() {
+		return overlayVisible;
+	}
+
+	private static final int ROW_HEIGHT = 16;
+	private static final int LABEL_WIDTH = 150;
+	private static final int GRAPH_WIDTH = SAMPLES, GRAPH_HEIGHT = 12;
+	private static final int OVERLAY_WIDTH = LABEL_WIDTH + GRAPH_WIDTH + 10;
+	private static final int OVERLAY_X = Game.GAME_WIDTH - OVERLAY_WIDTH - 10, OVERLAY_Y = 10; // top right, clear of the HUD
+	private static final long GRAPH_SCALE = 2000000; // 2 ms is a full bar
+	private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+	private static final Color BAR = new Color(90, 220, 90);
+	private static final Color SLOW_BAR = new Color(230, 70, 70);
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+	// One row per phase: name, average of the last SAMPLES, and a bar per sample (red above 1 ms)
+	public static void DrawOverlay(Graphics g) {
+		int height = ROW_HEIGHT * (PHASES + 1) + 6;
+		g.setColor(BACKGROUND);
+		g.fillRect(OVERLAY_X, OVERLAY_Y, OVERLAY_WIDTH, height);
+		g.setFont(FONT);
+
+		int y = OVERLAY_Y + ROW_HEIGHT;
+		g.setColor(Color.WHITE);
+		g.drawString("FPS " + fps + "  UPS " + ups + "  skipped " + skipped + "  jitter " + jitterAvg / 1000 + "/" + jitterMax / 1000 + "us",
+				OVERLAY_X + 4, y - 3);
+
+		for (int phase = 0; phase < PHASES; phase++) {
+			y += ROW_HEIGHT;
+			long[] ring = samples[phase];
+			int start = sampleIndex[phase];
+
+			long sum = 0;
+			int graphX = OVERLAY_X + LABEL_WIDTH;
+			for (int i = 0; i < SAMPLES; i++) {
+				long nanos = ring[(start + i) % SAMPLES];
+				sum += nanos;
+				int barHeight = (int) Math.min(GRAPH_HEIGHT, nanos * GRAPH_HEIGHT / GRAPH_SCALE);
+				if (barHeight > 0) {
+					g.setColor(nanos > 1000000 ? SLOW_BAR : BAR);
+					g.fillRect(graphX + i, y - 2 - barHeight, 1, barHeight);
+				}
+			}
+
+			g.setColor(Color.WHITE);
+			g.drawString(String.format("%-10s %6.3fms", PHASE_NAMES[phase], sum / (double) SAMPLES / 1000000), OVERLAY_X + 4, y - 3);
+		}
+	}
+
+	// p50/p99/max per phase over the whole session
+	public static void PrintSummary() {
+		System.out.println("Frame profile (microseconds)");
+		System.out.printf("  %-11s %10s %8s %8s %8s %8s%n", "phase", "samples", "mean", "p50", "p99", "max");
+		for (int phase = 0; phase < PHASES; phase++) {
+			if (count[phase] == 0)
+				continue;
+			System.out.printf("  %-11s %10d %8.1f %8s %8s %8d%n", PHASE_NAMES[phase], count[phase], total[phase] / (double) count[phase] / 1000,
+					GetPercentile(phase, 0.50), GetPercentile(phase, 0.99), max[phase] / 1000);
+		}
+	}
+
+	private static String GetPercentile(int phase, double percentile) {
+		long target = (long) Math.ceil(count[phase] * percentile);
+		long seen = 0;
+		for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+			seen += histogram[phase][bucket];
+			if (seen >= target)
+				return bucket == HISTOGRAM_BUCKETS - 1 ? ">" + bucket : String.valueOf(bucket);
+		}
+		return "-";
+	}
+}
@@ -0,0 +1,162 @@
+package utilz;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// Animation frames scaled to their on-screen size once, on first use, and then drawn 1:1.
+// Scaling a 256x256 frame up to 576 px (1152 px for the Tikbalang) on every drawImage was the most
+// expensive thing the renderer did, a straight copy of an already scaled image is far cheaper.
+//
+// Frames are cropped to the part that isn't transparent and mirrored copies are cached separately,
+// so the draw is always a plain blit. All sheets share one memory budget (-Daswang.spritecache.mb,
+// default 192). When it is full the least recently drawn frames are dropped, which are the frames
+// of animations nobody is playing right now. A dropped frame is just scaled again the next time.
+//
+// Only used from the thread that renders, but the methods are synchronized in case that changes.
+public class SpriteCache {
+
+	private static final long BUDGET_BYTES = Long.getLong("aswang.spritecache.mb", 192) * 1024 * 1024;
+
+	// one scaled frame, image is null when the frame is fully transparent
+	private static class Frame {
+		final Sheet sheet;
+		final int state, aniIndex, mirror;
+		final BufferedImage image;
+		final int offsetX, offsetY; // where the cropped image sits inside the full size frame
+		final long bytes;
+
+		Frame(Sheet sheet, int state, int aniIndex, int mirror, BufferedImage image, int offsetX, int offsetY) {
+			this.sheet = sheet;
+			this.state = state;
+			this.aniIndex = aniIndex;
+			this.mirror = mirror;
+			this.image = image;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.bytes = image == null ? 0 : (long) image.getWidth() * image.getHeight() * 4;
+		}
+	}
+
+	// The frames of one atlas and the size they are drawn at
+	public static class Sheet {
+		private final BufferedImage[][] source;
+		private final Frame[][][] scaled; // [state][aniIndex][mirrored]
+		private final int width, height;
+
+		private Sheet(BufferedImage[][] source, int width, int height) {
+			this.source = source;
+			this.width = width;
+			this.height = height;
+			scaled = new Frame[source.length][][];
+			for (int j = 0; j < source.length; j++)
+				scaled[j] = new Frame[source[j].length][2];
+		}
+
+		// x, y is the top left of the full size frame, same as the old scaled drawImage
+		public void draw(Graphics g, int state, int aniIndex, int x, int y, boolean mirrored) {
+			Frame frame = GetFrame(this, state, aniIndex, mirrored ? 1 : 0);
+			if (frame.image != null)
+				g.drawImage(frame.image, x + frame.offsetX, y + frame.offsetY, null);
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+	}
+
+	// frames in least recently drawn order
+	private static final LinkedHashMap<Frame, Frame> lru = new LinkedHashMap<>(256, 0.75f, true);
+	private static long usedBytes = 0;
+	private static long hits, misses, evictions;
+
+	public static Sheet CreateSheet(BufferedImage[][] frames, int width, int height) {
+		return new Sheet(frames, width, height);
+	}
+
+	private static synchronized Frame GetFrame(Sheet sheet, int state, int aniIndex, int mirror) {
+		Frame frame = sheet.scaled[state][aniIndex][mirror];
+		if (frame != null) {
+			hits++;
+			lru.get(frame); // moves it to the back of the line
+			return frame;
+		}
+
+		misses++;
+		frame = ScaleFrame(sheet, state, aniIndex, mirror);
+		sheet.scaled[state][aniIndex][mirror] = frame;
+
+		usedBytes += frame.bytes;
+		lru.put(frame, frame);
+		evictOverBudget(frame);
+		return frame;
+	}
+
+	private static void evictOverBudget(Frame keep) {
+		Iterator<Frame> it = lru.keySet().iterator();
+		while (usedBytes > BUDGET_BYTES && it.hasNext()) {
+			Frame oldest = it.next();
+			if (oldest == keep)
+				break;
+			it.remove();
+			oldest.sheet.scaled[oldest.state][oldest.aniIndex][oldest.mirror] = null;
+			usedBytes -= oldest.bytes;
+			evictions++;
+		}
+	}
+
+	private static Frame ScaleFrame(Sheet sheet, int state, int aniIndex, int mirror) {
+		BufferedImage src = sheet.source[state][aniIndex];
+		int srcW = src.getWidth(), srcH = src.getHeight();
+
+		// opaque bounds in source pixels
+		int[] argb = src.getRGB(0, 0, srcW, srcH, null, 0, srcW);
+		int minX = srcW, minY = srcH, maxX = -1, maxY = -1;
+		for (int y = 0; y < srcH; y++)
+			for (int x = 0; x < srcW; x++)
+				if ((argb[y * srcW + x] >>> 24) != 0) {
+					if (x < minX) minX = x;
+					if (x > maxX) maxX = x;
+					if (y < minY) minY = y;
+					if (y > maxY) maxY = y;
+				}
+		if (maxX < 0)
+			return new Frame(sheet, state, aniIndex, mirror, null, 0, 0);
+
+		// same bounds in screen pixels, one pixel of slack so nearest neighbour rounding can't cut an edge
+		int w = sheet.width, h = sheet.height;
+		int left = Math.max(0, (int) ((long) minX * w / srcW) - 1);
+		int right = Math.min(w, (int) (((long) maxX + 1) * w / srcW) + 2);
+		int top = Math.max(0, (int) ((long) minY * h / srcH) - 1);
+		int bottom = Math.min(h, (int) (((long) maxY + 1) * h / srcH) + 2);
+		if (mirror == 1) {
+			int mirroredLeft = w - right;
+			right = w - left;
+			left = mirroredLeft;
+		}
+
+		BufferedImage image = LoadSave.CreateCompatibleImage(right - left, bottom - top);
+		Graphics2D g = image.createGraphics();
+		// default hints are nearest neighbour, same pixels the old per frame scaling produced
+		if (mirror == 1)
+			g.drawImage(src, w - left, -top, -w, h, null);
+		else
+			g.drawImage(src, -left, -top, w, h, null);
+		g.dispose();
+
+		return new Frame(sheet, state, aniIndex, mirror, image, left, top);
+	}
+
+	public static synchronized void PrintStats() {
+		if (hits + misses == 0)
+			return;
+		System.out.printf("Sprite cache: %d frames, %.1f of %d MB, %d hits, %d misses, %d evicted%n", lru.size(), usedBytes / 1048576.0,
+				BUDGET_BYTES / 1048576, hits, misses, evictions);
+	}
+}